@@ -0,0 +1,35 @@
+-- Prepackaged database shipped in the assets of the app (database/todoc.db), built by the generatePrepackagedDatabase task.
+-- The tables, indexes and triggers must match the entities of TodocDatabase at the version set below:
+-- Room checks them when the file is copied on the first launch. Older versions are migrated after the copy.
+-- The android_metadata table is left out, so that Android indexes the names with the collation of the device locale on the first open.
+
+PRAGMA user_version = 11;
+
+-- Pages freed by the purge of the deleted tasks are given back by PRAGMA incremental_vacuum, set before any table is created
+PRAGMA auto_vacuum = INCREMENTAL;
+
+CREATE TABLE IF NOT EXISTS `Project` (`id` INTEGER NOT NULL, `name` TEXT NOT NULL, `color` INTEGER NOT NULL, PRIMARY KEY(`id`));
+
+CREATE TABLE IF NOT EXISTS `Task` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `projectId` INTEGER NOT NULL,
+    `name` TEXT NOT NULL COLLATE LOCALIZED, `creationTimestamp` INTEGER NOT NULL, `isSelected` INTEGER, `deletedAt` INTEGER,
+    FOREIGN KEY(`projectId`) REFERENCES `Project`(`id`) ON UPDATE NO ACTION ON DELETE NO ACTION );
+
+CREATE VIRTUAL TABLE IF NOT EXISTS `TaskFts` USING FTS4(`name` TEXT NOT NULL, tokenize=unicode61, content=`Task`, prefix=`2,3`);
+
+-- Reference data, the same projects as Project.getAllProjects(), used when the asset is missing
+INSERT INTO `Project` (`id`, `name`, `color`) VALUES (1, 'Projet Tartampion', -1385775);
+INSERT INTO `Project` (`id`, `name`, `color`) VALUES (2, 'Projet Lucidia', -4928070);
+INSERT INTO `Project` (`id`, `name`, `color`) VALUES (3, 'Projet Circus', -6041902);
+
+-- Indexes are created after the data, so that each one is built in a single pass.
+-- The partial indexes of the Task table are left out: Room would reject them, they are created when the database is opened.
+CREATE INDEX IF NOT EXISTS `index_Task_projectId` ON `Task` (`projectId`);
+
+-- The full-text search triggers of TodocDatabase, which only index the tasks which are not deleted, instead of the ones of Room
+CREATE TRIGGER IF NOT EXISTS `TaskFts_live_BEFORE_UPDATE` BEFORE UPDATE ON `Task` WHEN OLD.`deletedAt` IS NULL BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END;
+CREATE TRIGGER IF NOT EXISTS `TaskFts_live_BEFORE_DELETE` BEFORE DELETE ON `Task` WHEN OLD.`deletedAt` IS NULL BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END;
+CREATE TRIGGER IF NOT EXISTS `TaskFts_live_AFTER_UPDATE` AFTER UPDATE ON `Task` WHEN NEW.`deletedAt` IS NULL BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END;
+CREATE TRIGGER IF NOT EXISTS `TaskFts_live_AFTER_INSERT` AFTER INSERT ON `Task` WHEN NEW.`deletedAt` IS NULL BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END;
+
+INSERT INTO `TaskFts`(`docid`, `name`) SELECT `id`, `name` FROM `Task` WHERE `deletedAt` IS NULL;
+ANALYZE;
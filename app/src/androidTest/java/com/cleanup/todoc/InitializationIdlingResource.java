@@ -0,0 +1,66 @@
+package com.cleanup.todoc;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Observer;
+import androidx.test.espresso.IdlingResource;
+
+/**
+ * Idling resource which is busy while the application is opening and warming the database,
+ * so that Espresso waits for the ViewModelFactory before acting on the activity.
+ * It observes the state of the application, which knows nothing about Espresso.
+ */
+public class InitializationIdlingResource implements IdlingResource {
+
+    @NonNull
+    private final TodocApplication application;
+
+    /**
+     * Notified when the initialization ends, once Espresso has registered it
+     */
+    @Nullable
+    private volatile ResourceCallback resourceCallback;
+
+    /**
+     * Notifies Espresso when the ViewModelFactory or a failure is emitted
+     */
+    @NonNull
+    private final Observer<Object> initializationObserver = value -> {
+        ResourceCallback callback = resourceCallback;
+        if (value != null && callback != null) {
+            callback.onTransitionToIdle();
+        }
+    };
+
+    public InitializationIdlingResource(@NonNull TodocApplication application) {
+        this.application = application;
+    }
+
+    @Override
+    public String getName() {
+        return "TodocApplication initialization";
+    }
+
+    @Override
+    public boolean isIdleNow() {
+        return !application.isInitializing(); // Called by Espresso on the main thread
+    }
+
+    @Override
+    public void registerIdleTransitionCallback(ResourceCallback callback) {
+        resourceCallback = callback;
+        application.getViewModelFactory().observeForever(initializationObserver); // Called by Espresso on the main thread
+        application.getInitializationError().observeForever(initializationObserver);
+    }
+
+    /**
+     * Stops observing the application, once the idling resource is unregistered.
+     */
+    @MainThread
+    public void release() {
+        resourceCallback = null;
+        application.getViewModelFactory().removeObserver(initializationObserver);
+        application.getInitializationError().removeObserver(initializationObserver);
+    }
+}
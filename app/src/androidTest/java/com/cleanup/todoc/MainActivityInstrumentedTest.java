@@ -15,11 +15,15 @@ import androidx.recyclerview.widget.RecyclerView;
 import android.view.View;
 import android.widget.TextView;
 
+import androidx.test.espresso.IdlingRegistry;
+import androidx.test.platform.app.InstrumentationRegistry;
 import androidx.test.rule.ActivityTestRule;
 import androidx.test.runner.AndroidJUnit4;
 
 import com.cleanup.todoc.ui.MainActivity;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -35,6 +39,23 @@ public class MainActivityInstrumentedTest {
     @Rule
     public ActivityTestRule<MainActivity> rule = new ActivityTestRule<>(MainActivity.class);
 
+    /**
+     * Busy until the application has opened the database, while the button adding a task is disabled
+     */
+    private InitializationIdlingResource initializationIdlingResource;
+
+    @Before
+    public void registerIdlingResource() {
+        initializationIdlingResource = new InitializationIdlingResource((TodocApplication) rule.getActivity().getApplication());
+        IdlingRegistry.getInstance().register(initializationIdlingResource);
+    }
+
+    @After
+    public void unregisterIdlingResource() {
+        IdlingRegistry.getInstance().unregister(initializationIdlingResource);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(initializationIdlingResource::release);
+    }
+
     @Test
     public void addAndRemoveTask() {
         MainActivity activity = rule.getActivity();
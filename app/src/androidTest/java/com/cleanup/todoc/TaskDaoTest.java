@@ -1,15 +1,24 @@
 package com.cleanup.todoc;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import android.content.Context;
+import android.database.Cursor;
+
 import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.paging.DataSource;
+import androidx.paging.LivePagedListBuilder;
 import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import androidx.test.InstrumentationRegistry;
 import androidx.test.runner.AndroidJUnit4;
 
 import com.cleanup.todoc.database.TodocDatabase;
 import com.cleanup.todoc.models.Project;
 import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskWithProject;
 
 import org.junit.After;
 import org.junit.Before;
@@ -17,6 +26,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -125,4 +137,395 @@ public class TaskDaoTest {
         List<Task> tasks = LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID));
         assertTrue(tasks.isEmpty());
     }
+
+    @Test
+
+    public void insertAndGetTasksSorted() throws InterruptedException {
+
+        // BEFORE : Adding demo project & tasks in an order matching none of the sort methods
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "hhh", 2));
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "aaa", 3));
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "zzz", 1));
+
+        // TEST
+        List<TaskWithProject> byNameAsc = loadAll(this.database.taskDao().getAllTasksByNameAsc());
+        assertEquals("aaa", byNameAsc.get(0).getName());
+        assertEquals("hhh", byNameAsc.get(1).getName());
+        assertEquals("zzz", byNameAsc.get(2).getName());
+
+        List<TaskWithProject> byNameDesc = loadAll(this.database.taskDao().getAllTasksByNameDesc());
+        assertEquals("zzz", byNameDesc.get(0).getName());
+        assertEquals("aaa", byNameDesc.get(2).getName());
+
+        List<TaskWithProject> oldFirst = loadAll(this.database.taskDao().getAllTasksByCreationTimestampAsc());
+        assertEquals("zzz", oldFirst.get(0).getName());
+        assertEquals("aaa", oldFirst.get(2).getName());
+
+        List<TaskWithProject> recentFirst = loadAll(this.database.taskDao().getAllTasksByCreationTimestampDesc());
+        assertEquals("aaa", recentFirst.get(0).getName());
+        assertEquals("zzz", recentFirst.get(2).getName());
+    }
+
+    @Test
+
+    public void insertAndGetProjectTasksSorted() throws InterruptedException {
+
+        // BEFORE : Adding two projects & tasks interleaved between them
+        Project otherProject = new Project(2L, "Projet Lucidia", 0xFFB4CDBA);
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        this.database.projectDao().createProject(otherProject);
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "hhh", 2));
+        this.database.taskDao().insertTask(new Task(otherProject.getId(), "bbb", 4));
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "aaa", 3));
+        this.database.taskDao().insertTask(new Task(otherProject.getId(), "yyy", 0));
+
+        // TEST
+        List<TaskWithProject> byId = loadAll(this.database.taskDao().getProjectTasksById(PROJECT_ID));
+        assertEquals(2, byId.size());
+        assertEquals("hhh", byId.get(0).getName());
+        assertEquals("aaa", byId.get(1).getName());
+
+        List<TaskWithProject> byNameAsc = loadAll(this.database.taskDao().getProjectTasksByNameAsc(otherProject.getId()));
+        assertEquals(2, byNameAsc.size());
+        assertEquals("bbb", byNameAsc.get(0).getName());
+        assertEquals("yyy", byNameAsc.get(1).getName());
+        assertEquals("Projet Lucidia", byNameAsc.get(0).getProjectName()); // Joined with the project of the task
+        assertEquals(0xFFB4CDBA, byNameAsc.get(0).getProjectColor());
+
+        List<TaskWithProject> recentFirst = loadAll(this.database.taskDao().getProjectTasksByCreationTimestampDesc(PROJECT_ID));
+        assertEquals("aaa", recentFirst.get(0).getName());
+        assertEquals("hhh", recentFirst.get(1).getName());
+    }
+
+    @Test
+
+    public void insertAndDeleteTasksInBulk() throws InterruptedException {
+
+        // BEFORE : Adding demo project & more tasks than the number of IDs bound to a single statement
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        List<Task> newTasks = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            newTasks.add(new Task(PROJECT_ID, "task " + i, i));
+        }
+        long[] taskIds = this.database.taskDao().insertTasks(newTasks);
+        assertEquals(1200, LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID)).size());
+
+        // Delete all tasks but the last one
+        List<Long> taskIdsToDelete = new ArrayList<>();
+        for (int i = 0; i < taskIds.length - 1; i++) {
+            taskIdsToDelete.add(taskIds[i]);
+        }
+        int deletedRows = this.database.taskDao().deleteTasksById(taskIdsToDelete);
+
+        // TEST
+        List<Task> tasks = LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID));
+        assertEquals(1199, deletedRows);
+        assertEquals(1, tasks.size());
+        assertEquals("task 1199", tasks.get(0).getName());
+    }
+
+    @Test
+
+    public void insertUpdateAndDeleteTasksInOneBatch() throws InterruptedException {
+
+        // BEFORE : Adding demo project & two tasks
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        long renamedTaskId = this.database.taskDao().insertTask(new Task(PROJECT_ID, "Vider la corbeille", 1));
+        long deletedTaskId = this.database.taskDao().insertTask(new Task(PROJECT_ID, "Nettoyer les vitres", 2));
+
+        // Insert a task, rename one and delete the other within the same transaction
+        long[] insertedIds = this.database.taskDao().applyWrites(
+                Collections.singletonList(new Task(PROJECT_ID, "Ranger le bureau", 3)),
+                Collections.singletonList(new Task(PROJECT_ID, renamedTaskId, "Bureau du directeur", 1)),
+                Collections.singletonList(deletedTaskId));
+
+        // TEST
+        List<Task> tasks = LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID));
+        assertEquals(1, insertedIds.length);
+        assertEquals(2, tasks.size());
+        assertEquals("Bureau du directeur", getTaskName(renamedTaskId));
+        assertEquals("Ranger le bureau", getTaskName(insertedIds[0]));
+    }
+
+    @Test
+
+    public void deleteRestoreAndPurgeTasks() throws InterruptedException {
+
+        // BEFORE : Adding demo project & two tasks, then deleting both of them
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        long restoredTaskId = this.database.taskDao().insertTask(new Task(PROJECT_ID, "Vider la corbeille", 1));
+        long purgedTaskId = this.database.taskDao().insertTask(new Task(PROJECT_ID, "Nettoyer les vitres", 2));
+        this.database.taskDao().deleteTasksById(Arrays.asList(restoredTaskId, purgedTaskId));
+
+        // TEST : the deleted tasks are hidden, and one of them is restored with its ID
+        assertTrue(LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID)).isEmpty());
+        assertEquals(1, this.database.taskDao().restoreTasksById(Collections.singletonList(restoredTaskId)));
+        assertEquals("Vider la corbeille", getTaskName(restoredTaskId));
+
+        // TEST : the other one is purged for good, it can no longer be restored
+        assertEquals(1, this.database.taskDao().purgeDeletedTasks(Long.MAX_VALUE, 10));
+        assertEquals(0, this.database.taskDao().restoreTasksById(Collections.singletonList(purgedTaskId)));
+        assertEquals(1, LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID)).size());
+    }
+
+    @Test
+
+    public void moveTasksToAnotherProject() throws InterruptedException {
+
+        // BEFORE : Adding two projects & three tasks in the first one
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        this.database.projectDao().createProject(new Project(2L, "Projet Lucidia", 0xFFB4CDBA));
+        long movedTaskId1 = this.database.taskDao().insertTask(new Task(PROJECT_ID, "Vider la corbeille", 1));
+        long movedTaskId2 = this.database.taskDao().insertTask(new Task(PROJECT_ID, "Nettoyer les vitres", 2));
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "Ranger le bureau", 3));
+
+        // Move two of the tasks with a single statement
+        int movedRows = this.database.taskDao().moveTasksById(Arrays.asList(movedTaskId1, movedTaskId2), 2L);
+
+        // TEST
+        assertEquals(2, movedRows);
+        assertEquals(1, LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID)).size());
+        assertEquals(2, LiveDataTestUtil.getValue(this.database.taskDao().getTasks(2L)).size());
+    }
+
+    @Test
+
+    public void insertAndSearchTasks() throws InterruptedException {
+
+        // BEFORE : Adding demo project & tasks, one of them being renamed after its insertion
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "Ranger le bureau", 1));
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "Nettoyer les vitres", 2));
+        long renamedTaskId = this.database.taskDao().insertTask(new Task(PROJECT_ID, "Vider la corbeille", 3));
+        this.database.taskDao().updateTask(new Task(PROJECT_ID, renamedTaskId, "Bureau du directeur", 3));
+
+        // TEST
+        List<TaskWithProject> tasks = loadAll(this.database.taskDao().searchTasks("bur*", "bur"));
+        assertEquals(2, tasks.size());
+        assertEquals("Bureau du directeur", tasks.get(0).getName()); // Starts with the searched text
+        assertEquals("Ranger le bureau", tasks.get(1).getName());
+
+        assertTrue(loadAll(this.database.taskDao().searchTasks("corb*", "corb")).isEmpty());
+
+        // Search restricted to a project
+        assertEquals(2, loadAll(this.database.taskDao().searchProjectTasks("bur*", "bur", PROJECT_ID)).size());
+        assertTrue(loadAll(this.database.taskDao().searchProjectTasks("bur*", "bur", PROJECT_ID + 1)).isEmpty());
+    }
+
+    @Test
+
+    public void searchTasksWithAccentedNames() throws InterruptedException {
+
+        // BEFORE : Adding demo project & tasks whose names start with accented capitals
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "État des lieux", 1));
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "Écrire le rapport", 2));
+
+        // TEST : the case and the accents are folded, as typed by the user or lower-cased by the repository
+        assertEquals("État des lieux", loadAll(this.database.taskDao().searchTasks("état*", "état")).get(0).getName());
+        assertEquals(1, loadAll(this.database.taskDao().searchTasks("etat*", "etat")).size());
+        assertEquals("Écrire le rapport", loadAll(this.database.taskDao().searchTasks("écrire*", "écrire")).get(0).getName());
+    }
+
+    @Test
+
+    public void openPrepackagedDatabase() throws InterruptedException {
+
+        // BEFORE : Copying the prepackaged database of the app, as on the first launch
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("prepackaged-test.db");
+        TodocDatabase prepackagedDatabase = Room.databaseBuilder(context, TodocDatabase.class, "prepackaged-test.db")
+                .createFromAsset("database/todoc.db")
+                .allowMainThreadQueries()
+                .build();
+
+        // TEST : Room accepts its schema, it holds the reference projects and indexes the new tasks
+        try {
+            List<Project> projects = LiveDataTestUtil.getValue(prepackagedDatabase.projectDao().getAllProjects());
+            assertEquals(Project.getAllProjects().length, projects.size());
+
+            prepackagedDatabase.taskDao().insertTask(new Task(PROJECT_ID, "Ranger le bureau", 1));
+            assertEquals(1, loadAll(prepackagedDatabase.taskDao().searchTasks("bur*", "bur")).size());
+        } finally {
+            prepackagedDatabase.close();
+            context.deleteDatabase("prepackaged-test.db");
+        }
+    }
+
+    @Test
+
+    public void updateDoesNotRestoreDeletedTask() throws InterruptedException {
+
+        // BEFORE : Adding demo project & demo task, then deleting the task while an update of it is still pending
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "Ranger le bureau", 1));
+        Task staleTask = LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID)).get(0);
+        this.database.taskDao().deleteTask(staleTask.getId());
+        staleTask.setName("Ranger le grenier");
+
+        // TEST : the stale update does not write the tombstone
+        assertEquals(0, this.database.taskDao().updateTask(staleTask));
+        assertEquals(0, this.database.taskDao().updateTasks(Collections.singletonList(staleTask)));
+        assertTrue(LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID)).isEmpty());
+        try (Cursor cursor = this.database.query("SELECT name, deletedAt FROM Task WHERE id = ?", new Object[]{staleTask.getId()})) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Ranger le bureau", cursor.getString(0));
+            assertFalse(cursor.isNull(1));
+        }
+    }
+
+    @Test
+
+    public void moveSkipsDeletedTasks() throws InterruptedException {
+
+        // BEFORE : Adding two projects & two tasks, one of them deleted
+        Project otherProject = new Project(PROJECT_ID + 1, "Projet Lucidia", 0xFFB4CDBA);
+        this.database.projectDao().createProject(PROJECT_DEMO);
+        this.database.projectDao().createProject(otherProject);
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "Ranger le bureau", 1));
+        this.database.taskDao().insertTask(new Task(PROJECT_ID, "Ranger le grenier", 2));
+        List<Task> tasks = LiveDataTestUtil.getValue(this.database.taskDao().getTasks(PROJECT_ID));
+        this.database.taskDao().deleteTask(tasks.get(1).getId());
+
+        // TEST : only the live task is moved
+        assertEquals(1, this.database.taskDao().moveTasksById(Arrays.asList(tasks.get(0).getId(), tasks.get(1).getId()), otherProject.getId()));
+        assertEquals(1, LiveDataTestUtil.getValue(this.database.taskDao().getTasks(otherProject.getId())).size());
+        try (Cursor cursor = this.database.query("SELECT projectId FROM Task WHERE id = ?", new Object[]{tasks.get(1).getId()})) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(PROJECT_ID, cursor.getLong(0));
+        }
+    }
+
+    @Test
+
+    public void openCreatesPartialIndexes() {
+
+        // BEFORE : Opening a database with the migrations and callbacks of the app
+        Context context = InstrumentationRegistry.getTargetContext();
+        TodocDatabase appDatabase = TodocDatabase.addMigrationsAndCallbacks(
+                Room.inMemoryDatabaseBuilder(context, TodocDatabase.class).allowMainThreadQueries(), context).build();
+
+        // TEST
+        try {
+            assertEquals(PARTIAL_INDEX_NAMES, getPartialIndexNames(appDatabase));
+        } finally {
+            appDatabase.close();
+        }
+    }
+
+    @Test
+
+    public void migrateDropsAndRecreatesPartialIndexes() throws InterruptedException {
+
+        // BEFORE : Creating a database with the partial indexes, a task and an archived task, then marking it as a version 7 database
+        Context context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase("migration-test.db");
+        TodocDatabase appDatabase = TodocDatabase.addMigrationsAndCallbacks(
+                Room.databaseBuilder(context, TodocDatabase.class, "migration-test.db").allowMainThreadQueries(), context).build();
+        appDatabase.taskDao().insertTask(new Task(PROJECT_ID, "Tâche example", 1));
+        assertEquals(PARTIAL_INDEX_NAMES, getPartialIndexNames(appDatabase));
+        SupportSQLiteDatabase db = appDatabase.getOpenHelper().getWritableDatabase();
+        db.execSQL("CREATE TABLE `ArchivedTask` (`id` INTEGER NOT NULL, `projectId` INTEGER NOT NULL, " +
+                "`name` TEXT NOT NULL COLLATE LOCALIZED, `creationTimestamp` INTEGER NOT NULL, `isSelected` INTEGER, `deletedAt` INTEGER, " +
+                "PRIMARY KEY(`id`), FOREIGN KEY(`projectId`) REFERENCES `Project`(`id`) ON UPDATE NO ACTION ON DELETE NO ACTION )");
+        db.execSQL("INSERT INTO `ArchivedTask` (`id`, `projectId`, `name`, `creationTimestamp`) VALUES (100, 1, 'Vider la corbeille', 0)");
+        db.setVersion(7);
+        appDatabase.close();
+
+        // TEST : Room validates the schema after the migrations to the current version, which fails if the partial indexes are still there,
+        // then they are created again and the full-text index is rebuilt, with its prefix index, and the archived task is back in the list
+        appDatabase = TodocDatabase.addMigrationsAndCallbacks(
+                Room.databaseBuilder(context, TodocDatabase.class, "migration-test.db").allowMainThreadQueries(), context).build();
+        try {
+            assertEquals(PARTIAL_INDEX_NAMES, getPartialIndexNames(appDatabase));
+            assertEquals(1, loadAll(appDatabase.taskDao().searchTasks("tache*", "tache")).size());
+            assertEquals(1, loadAll(appDatabase.taskDao().searchTasks("ta*", "ta")).size());
+            assertEquals(1, loadAll(appDatabase.taskDao().searchTasks("corb*", "corb")).size());
+            assertEquals(2, loadAll(appDatabase.taskDao().getAllTasksById()).size());
+            try (Cursor cursor = appDatabase.query("SELECT name FROM sqlite_master WHERE name = 'ArchivedTask'", null)) {
+                assertFalse(cursor.moveToFirst());
+            }
+        } finally {
+            appDatabase.close();
+            context.deleteDatabase("migration-test.db");
+        }
+    }
+
+    @Test
+
+    public void fullTextIndexSkipsDeletedTasks() throws InterruptedException {
+
+        // BEFORE : Opening a database with the migrations and callbacks of the app, then adding a task and deleting it
+        Context context = InstrumentationRegistry.getTargetContext();
+        TodocDatabase appDatabase = TodocDatabase.addMigrationsAndCallbacks(
+                Room.inMemoryDatabaseBuilder(context, TodocDatabase.class).allowMainThreadQueries(), context).build();
+        try {
+            appDatabase.taskDao().insertTask(new Task(PROJECT_ID, "Ranger le bureau", 1));
+            long taskId = loadAll(appDatabase.taskDao().getAllTasksById()).get(0).getId();
+            appDatabase.taskDao().deleteTask(taskId);
+
+            // TEST : the deletion removes the task from the index, the restore indexes it again, and the purge leaves the index untouched
+            assertEquals(Collections.emptyList(), getIndexedTaskIds(appDatabase, "ranger"));
+            appDatabase.taskDao().restoreTasks(Collections.singletonList(taskId));
+            assertEquals(Collections.singletonList(taskId), getIndexedTaskIds(appDatabase, "ra*"));
+            appDatabase.taskDao().deleteTask(taskId);
+            assertEquals(1, appDatabase.taskDao().purgeDeletedTasks(Long.MAX_VALUE, 10));
+            assertEquals(Collections.emptyList(), getIndexedTaskIds(appDatabase, "ranger"));
+        } finally {
+            appDatabase.close();
+        }
+    }
+
+    /**
+     * Returns the IDs of the tasks found in the full-text index by the given query, whether they are deleted or not.
+     */
+    private static List<Long> getIndexedTaskIds(TodocDatabase database, String query) {
+        List<Long> ids = new ArrayList<>();
+        try (Cursor cursor = database.query("SELECT docid FROM TaskFts WHERE TaskFts MATCH ?", new Object[]{query})) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The names of the partial indexes created when the database is opened, sorted by name.
+     */
+    private static final List<String> PARTIAL_INDEX_NAMES = Arrays.asList("index_Task_deletedAt",
+            "index_Task_live_creationTimestamp", "index_Task_live_name", "index_Task_live_projectId_creationTimestamp",
+            "index_Task_live_projectId_name");
+
+    /**
+     * Returns the names of the partial indexes of the given database, sorted by name.
+     */
+    private static List<String> getPartialIndexNames(TodocDatabase database) {
+        List<String> names = new ArrayList<>();
+        try (Cursor cursor = database.query("SELECT name FROM sqlite_master WHERE type = 'index' AND sql LIKE '% WHERE %' ORDER BY name", null)) {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the name of the live task with the given ID, read through the rows of the list of all tasks, or null if it is not listed.
+     */
+    private String getTaskName(long taskId) throws InterruptedException {
+        for (TaskWithProject row : loadAll(this.database.taskDao().getAllTasksById())) {
+            if (row.getId() == taskId) {
+                return row.getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Loads every row provided by a paged data source, the initial load being run synchronously by InstantTaskExecutorRule.
+     */
+    private static <T> List<T> loadAll(DataSource.Factory<Integer, T> dataSourceFactory) throws InterruptedException {
+        return LiveDataTestUtil.getValue(new LivePagedListBuilder<>(dataSourceFactory, 50).build());
+    }
 }
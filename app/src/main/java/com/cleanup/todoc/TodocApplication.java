@@ -0,0 +1,102 @@
+package com.cleanup.todoc;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.cleanup.todoc.database.DatabaseExecutors;
+import com.cleanup.todoc.injection.ViewModelFactory;
+
+/**
+ * <p>Application of Todoc, created before any activity when the process starts.</p>
+ * <p>Builds the ViewModelFactory and warms the database on the query executor, while the first activity inflates its views:
+ * the activity observes the factory and creates its ViewModel once it is ready, instead of blocking the main thread.
+ * If the database cannot be opened, the failure is emitted instead, and the initialization can be retried.</p>
+ */
+public class TodocApplication extends Application {
+
+    private static final String TAG = "TodocApplication";
+
+    /**
+     * The ViewModelFactory, set once the database is opened and warmed.
+     */
+    @NonNull
+    private final MutableLiveData<ViewModelFactory> viewModelFactory = new MutableLiveData<>();
+
+    /**
+     * The failure of the last initialization, null while the initialization runs or once it succeeded.
+     */
+    @NonNull
+    private final MutableLiveData<RuntimeException> initializationError = new MutableLiveData<>();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        initialize();
+    }
+
+    /**
+     * Opens and warms the database on the query executor, unless the ViewModelFactory is already ready.
+     * Called when the application is created, then when the user retries after a failure.
+     */
+    @MainThread
+    public void initialize() {
+        if (viewModelFactory.getValue() != null) {
+            return;
+        }
+        initializationError.setValue(null);
+        DatabaseExecutors.getInstance().queryExecutor().execute(this::buildViewModelFactory);
+    }
+
+    /**
+     * Builds the ViewModelFactory, which opens the database and schedules its maintenance,
+     * warms the database, then signals that the factory is ready, or that the initialization failed.
+     */
+    @WorkerThread
+    private void buildViewModelFactory() {
+        try {
+            ViewModelFactory factory = ViewModelFactory.getInstance(this);
+            factory.warmUp();
+            viewModelFactory.postValue(factory);
+        } catch (RuntimeException e) { // The database could not be opened or migrated, for example when the storage is full
+            Log.e(TAG, "Failed to open the database", e);
+            initializationError.postValue(e);
+        }
+    }
+
+    /**
+     * Returns the ViewModelFactory, emitted once the database is opened and warmed.
+     *
+     * @return A LiveData object containing the ViewModelFactory once it is ready.
+     */
+    @NonNull
+    public LiveData<ViewModelFactory> getViewModelFactory() {
+        return viewModelFactory;
+    }
+
+    /**
+     * Returns the failure of the initialization, emitted when the database cannot be opened.
+     *
+     * @return A LiveData object containing the failure, or null while there is none.
+     */
+    @NonNull
+    public LiveData<RuntimeException> getInitializationError() {
+        return initializationError;
+    }
+
+    /**
+     * Returns whether the database is being opened and warmed: neither the ViewModelFactory nor a failure has been emitted yet.
+     *
+     * @return True while the initialization runs.
+     */
+    @MainThread
+    public boolean isInitializing() {
+        return viewModelFactory.getValue() == null && initializationError.getValue() == null;
+    }
+}
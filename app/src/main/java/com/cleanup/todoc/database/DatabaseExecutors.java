@@ -0,0 +1,147 @@
+package com.cleanup.todoc.database;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors used to access the database outside the main (UI) thread.
+ *
+ * Reads and writes are run on separate executors so that queries are never queued behind writes:
+ * several threads serve the queries, and a single thread serves the transactions since SQLite only allows one writer at a time.
+ */
+public class DatabaseExecutors {
+
+    /**
+     * Tag of the logs of the executors.
+     */
+    private static final String TAG = "DatabaseExecutors";
+
+    /**
+     * Number of threads serving the queries, bounded to leave room for the UI thread on small devices.
+     */
+    private static final int QUERY_THREAD_COUNT = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+
+    /**
+     * Singleton instance of the DatabaseExecutors class.
+     */
+    private static volatile DatabaseExecutors INSTANCE;
+
+    /**
+     * Executor running the queries (reads) of the database.
+     */
+    @NonNull
+    private final ExecutorService queryExecutor;
+
+    /**
+     * Executor running the transactions (writes) of the database, which can also delay them to group them.
+     * A scheduled executor keeps the exception of a task in its Future, which nobody reads: they are logged after each task instead.
+     */
+    @NonNull
+    private final ScheduledExecutorService transactionExecutor;
+
+    /**
+     * Constructor for creating a DatabaseExecutors object.
+     */
+    private DatabaseExecutors() {
+        this.queryExecutor = Executors.newFixedThreadPool(QUERY_THREAD_COUNT, newThreadFactory("todoc-query"));
+        this.transactionExecutor = new ScheduledThreadPoolExecutor(1, newThreadFactory("todoc-transaction")) {
+            @Override
+            protected void afterExecute(Runnable runnable, Throwable throwable) {
+                super.afterExecute(runnable, throwable);
+                Throwable failure = throwable != null ? throwable : getFailure(runnable);
+                if (failure != null) {
+                    Log.e(TAG, "Uncaught failure of a database write", failure);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the singleton instance of the DatabaseExecutors.
+     *
+     * @return The singleton instance of the DatabaseExecutors.
+     */
+    @NonNull
+    public static DatabaseExecutors getInstance() {
+        if (INSTANCE == null) {
+            synchronized (DatabaseExecutors.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new DatabaseExecutors();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the executor running the queries (reads) of the database.
+     *
+     * @return The query executor.
+     */
+    @NonNull
+    public ExecutorService queryExecutor() {
+        return queryExecutor;
+    }
+
+    /**
+     * Returns the executor running the transactions (writes) of the database.
+     *
+     * @return The transaction executor.
+     */
+    @NonNull
+    public ScheduledExecutorService transactionExecutor() {
+        return transactionExecutor;
+    }
+
+    /**
+     * Returns the exception thrown by a completed task of a scheduled executor, which is kept in its Future.
+     *
+     * @param runnable The completed task.
+     * @return The exception thrown by the task, or null if it succeeded or was cancelled.
+     */
+    @Nullable
+    private static Throwable getFailure(@NonNull Runnable runnable) {
+        if (!(runnable instanceof Future<?>) || !((Future<?>) runnable).isDone()) {
+            return null; // A periodic task is not done after each of its runs
+        }
+        try {
+            ((Future<?>) runnable).get();
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Creates a factory of named background threads.
+     *
+     * @param name The prefix of the name of the created threads.
+     * @return The thread factory.
+     */
+    @NonNull
+    private static ThreadFactory newThreadFactory(@NonNull String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1); // Slightly below the UI thread
+            return thread;
+        };
+    }
+}
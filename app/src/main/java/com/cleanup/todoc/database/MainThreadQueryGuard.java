@@ -0,0 +1,24 @@
+package com.cleanup.todoc.database;
+
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+
+import java.util.List;
+
+/**
+ * Query callback failing fast when a statement is executed on the main (UI) thread.
+ *
+ * It is registered in debug builds only, with a direct executor, so that it runs on the thread executing the statement,
+ * just before the statement is sent to SQLite.
+ */
+class MainThreadQueryGuard implements RoomDatabase.QueryCallback {
+
+    @Override
+    public void onQuery(@NonNull String sqlQuery, @NonNull List<Object> bindArgs) {
+        if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
+            throw new IllegalStateException("Database accessed on the main thread: " + sqlQuery);
+        }
+    }
+}
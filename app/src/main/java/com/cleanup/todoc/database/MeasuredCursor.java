@@ -0,0 +1,62 @@
+package com.cleanup.todoc.database;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Cursor recording the latency and row count of the query it holds the result of, when it is closed.
+ *
+ * SQLite only runs a query when its cursor is first read, so the latency is measured from the call of the query
+ * to the close of the cursor, which covers the whole DAO call reading it.
+ */
+class MeasuredCursor extends CursorWrapper {
+
+    /**
+     * The registry the query is recorded in.
+     */
+    @NonNull
+    private final QueryMetrics queryMetrics;
+
+    /**
+     * The SQL of the query.
+     */
+    @NonNull
+    private final String sql;
+
+    /**
+     * Time at which the query has been called, from {@link System#nanoTime()}.
+     */
+    private final long startNanos;
+
+    /**
+     * Whether the query has already been recorded, so that closing the cursor twice records it once.
+     */
+    private boolean recorded;
+
+    /**
+     * Constructor for creating a MeasuredCursor object.
+     *
+     * @param cursor       The cursor of the query.
+     * @param queryMetrics The registry the query is recorded in.
+     * @param sql          The SQL of the query.
+     * @param startNanos   Time at which the query has been called, from {@link System#nanoTime()}.
+     */
+    MeasuredCursor(@NonNull Cursor cursor, @NonNull QueryMetrics queryMetrics, @NonNull String sql, long startNanos) {
+        super(cursor);
+        this.queryMetrics = queryMetrics;
+        this.sql = sql;
+        this.startNanos = startNanos;
+    }
+
+    @Override
+    public void close() {
+        if (!recorded && !isClosed()) {
+            recorded = true;
+            int rowCount = getCount(); // Already known once the cursor has been read: SQLite counts all the rows on the first read
+            queryMetrics.record(sql, System.nanoTime() - startNanos, rowCount);
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,120 @@
+package com.cleanup.todoc.database;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+
+/**
+ * Compiled statement recording the latency and the changed row count of each of its executions.
+ * The inserts, updates and deletes generated by Room are all run through compiled statements.
+ */
+class MeasuredStatement implements SupportSQLiteStatement {
+
+    /**
+     * The compiled statement.
+     */
+    @NonNull
+    private final SupportSQLiteStatement statement;
+
+    /**
+     * The registry the executions are recorded in.
+     */
+    @NonNull
+    private final QueryMetrics queryMetrics;
+
+    /**
+     * The SQL of the statement.
+     */
+    @NonNull
+    private final String sql;
+
+    /**
+     * Constructor for creating a MeasuredStatement object.
+     *
+     * @param statement    The compiled statement.
+     * @param queryMetrics The registry the executions are recorded in.
+     * @param sql          The SQL of the statement.
+     */
+    MeasuredStatement(@NonNull SupportSQLiteStatement statement, @NonNull QueryMetrics queryMetrics, @NonNull String sql) {
+        this.statement = statement;
+        this.queryMetrics = queryMetrics;
+        this.sql = sql;
+    }
+
+    // --- EXECUTIONS ---
+    @Override
+    public void execute() {
+        long startNanos = System.nanoTime();
+        statement.execute();
+        queryMetrics.record(sql, System.nanoTime() - startNanos, 0);
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        long startNanos = System.nanoTime();
+        int rowCount = statement.executeUpdateDelete();
+        queryMetrics.record(sql, System.nanoTime() - startNanos, rowCount);
+        return rowCount;
+    }
+
+    @Override
+    public long executeInsert() {
+        long startNanos = System.nanoTime();
+        long rowId = statement.executeInsert();
+        queryMetrics.record(sql, System.nanoTime() - startNanos, rowId != -1 ? 1 : 0); // -1 when the row has been ignored
+        return rowId;
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        long startNanos = System.nanoTime();
+        long value = statement.simpleQueryForLong();
+        queryMetrics.record(sql, System.nanoTime() - startNanos, 1);
+        return value;
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        long startNanos = System.nanoTime();
+        String value = statement.simpleQueryForString();
+        queryMetrics.record(sql, System.nanoTime() - startNanos, 1);
+        return value;
+    }
+
+    // --- BINDINGS ---
+    @Override
+    public void bindNull(int index) {
+        statement.bindNull(index);
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        statement.bindLong(index, value);
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        statement.bindDouble(index, value);
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        statement.bindString(index, value);
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        statement.bindBlob(index, value);
+    }
+
+    @Override
+    public void clearBindings() {
+        statement.clearBindings();
+    }
+
+    @Override
+    public void close() throws IOException {
+        statement.close();
+    }
+}
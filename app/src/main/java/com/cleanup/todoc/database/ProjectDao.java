@@ -52,4 +52,13 @@ public interface ProjectDao {
     @Query("SELECT * FROM Project")
 
     LiveData<List<Project>> getAllProjects();
+
+    /**
+     * Retrieves all Project entities stored in the database, synchronously.
+     *
+     * @return The list of all Project entities stored in the database.
+     */
+    @Query("SELECT * FROM Project")
+
+    List<Project> getProjectList();
 }
@@ -0,0 +1,274 @@
+package com.cleanup.todoc.database;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registry of the latency, row count and call count of each statement executed on the database.
+ *
+ * It is lock-free: the statistics of a statement are only made of atomic counters, and a latency histogram
+ * whose buckets are atomic too, so the threads running queries never wait for each other to record them.
+ * The percentiles are estimated from the histogram, whose buckets are about 25% wide.
+ *
+ * Statements slower than the threshold are logged with their SQL.
+ */
+public class QueryMetrics {
+
+    /**
+     * Tag of the slow query logs.
+     */
+    private static final String TAG = "QueryMetrics";
+
+    /**
+     * Number of buckets of the histograms, covering latencies from 1 µs up to about half an hour.
+     */
+    private static final int BUCKET_COUNT = 4 + 30 * 4;
+
+    /**
+     * Statistics of each statement, indexed by SQL.
+     */
+    @NonNull
+    private final ConcurrentHashMap<String, StatementStats> statementStats = new ConcurrentHashMap<>();
+
+    /**
+     * Duration above which a statement is logged, in nanoseconds.
+     */
+    private final long slowQueryThresholdNanos;
+
+    /**
+     * Constructor for creating a QueryMetrics object.
+     *
+     * @param slowQueryThresholdMs Duration above which a statement is logged, in milliseconds.
+     */
+    public QueryMetrics(long slowQueryThresholdMs) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMs);
+    }
+
+    /**
+     * Records an execution of a statement, and logs it if it is slower than the threshold.
+     *
+     * @param sql           The SQL of the statement.
+     * @param durationNanos The duration of the execution, in nanoseconds.
+     * @param rowCount      The number of rows returned or changed by the statement.
+     */
+    public void record(@NonNull String sql, long durationNanos, long rowCount) {
+        String key = normalize(sql);
+        StatementStats stats = statementStats.get(key);
+        if (stats == null) {
+            StatementStats newStats = new StatementStats(key);
+            stats = statementStats.putIfAbsent(key, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        stats.record(durationNanos, rowCount);
+
+        if (durationNanos > slowQueryThresholdNanos) {
+            Log.w(TAG, String.format(Locale.ROOT, "Slow query (%d ms, %d rows): %s",
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos), rowCount, sql));
+        }
+    }
+
+    /**
+     * Returns the statistics of all the statements recorded so far, the most frequently called first.
+     *
+     * @return The statistics of the statements.
+     */
+    @NonNull
+    public List<StatementStats> getStatementStats() {
+        List<StatementStats> stats = new ArrayList<>(statementStats.values());
+        Collections.sort(stats, (left, right) -> Long.compare(right.getCallCount(), left.getCallCount()));
+        return stats;
+    }
+
+    /**
+     * Forgets the statistics recorded so far.
+     */
+    public void reset() {
+        statementStats.clear();
+    }
+
+    /**
+     * Writes the statistics of all the statements recorded so far, in a human-readable form.
+     *
+     * @param writer The writer to write the statistics to.
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        writer.println("Query metrics (latencies in µs):");
+        for (StatementStats stats : getStatementStats()) {
+            writer.println(String.format(Locale.ROOT, "  calls=%d rows=%d p50=%d p95=%d p99=%d max=%d total=%d",
+                    stats.getCallCount(), stats.getRowCount(),
+                    stats.getPercentileMicros(0.50), stats.getPercentileMicros(0.95), stats.getPercentileMicros(0.99),
+                    stats.getMaxMicros(), stats.getTotalMicros()));
+            writer.println("    " + stats.getSql());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the key of a statement: its SQL, with the lists of placeholders collapsed
+     * so that the queries on lists of IDs share the same statistics whatever the size of the list.
+     *
+     * @param sql The SQL of the statement.
+     * @return The key of the statement.
+     */
+    @NonNull
+    static String normalize(@NonNull String sql) {
+        if (!sql.contains("?,")) {
+            return sql;
+        }
+        return sql.replaceAll("\\?(\\s*,\\s*\\?)+", "?, ...");
+    }
+
+    /**
+     * Returns the index of the histogram bucket of a latency: the 4 first buckets hold 0 to 3 µs,
+     * then each power of two is split in 4 buckets.
+     *
+     * @param micros The latency, in microseconds.
+     * @return The index of its bucket.
+     */
+    static int bucketOf(long micros) {
+        if (micros < 4) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int mantissa = (int) (micros >>> (exponent - 2)) & 3;
+        return Math.min(4 + (exponent - 2) * 4 + mantissa, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Returns the highest latency held by a histogram bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The highest latency of the bucket, in microseconds.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = 2 + (bucket - 4) / 4;
+        int mantissa = (bucket - 4) % 4;
+        return ((4L + mantissa + 1) << (exponent - 2)) - 1;
+    }
+
+    /**
+     * Statistics of the executions of a single statement.
+     */
+    public static class StatementStats {
+
+        /**
+         * The SQL of the statement.
+         */
+        @NonNull
+        private final String sql;
+
+        /**
+         * Number of executions of the statement.
+         */
+        private final AtomicLong callCount = new AtomicLong();
+
+        /**
+         * Total number of rows returned or changed by the statement.
+         */
+        private final AtomicLong rowCount = new AtomicLong();
+
+        /**
+         * Total duration of the executions of the statement, in nanoseconds.
+         */
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        /**
+         * Longest execution of the statement, in nanoseconds.
+         */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Number of executions of the statement per latency bucket.
+         */
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+
+        /**
+         * Constructor for creating a StatementStats object.
+         *
+         * @param sql The SQL of the statement.
+         */
+        StatementStats(@NonNull String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * Records an execution of the statement.
+         *
+         * @param durationNanos The duration of the execution, in nanoseconds.
+         * @param rows          The number of rows returned or changed by the execution.
+         */
+        void record(long durationNanos, long rows) {
+            callCount.incrementAndGet();
+            rowCount.addAndGet(rows);
+            totalNanos.addAndGet(durationNanos);
+            histogram.incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(durationNanos)));
+
+            long max = maxNanos.get();
+            while (durationNanos > max && !maxNanos.compareAndSet(max, durationNanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        // --- GETTERS ---
+        @NonNull
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCallCount() {
+            return callCount.get();
+        }
+
+        public long getRowCount() {
+            return rowCount.get();
+        }
+
+        public long getTotalMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(totalNanos.get());
+        }
+
+        public long getMaxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+        }
+
+        /**
+         * Returns an estimate of a percentile of the latency of the statement: the upper bound of the bucket holding it.
+         *
+         * @param percentile The percentile, between 0 and 1.
+         * @return The estimated latency, in microseconds, or 0 if the statement has not been executed.
+         */
+        public long getPercentileMicros(double percentile) {
+            long[] counts = new long[BUCKET_COUNT];
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), getMaxMicros());
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -1,25 +1,49 @@
 package com.cleanup.todoc.database;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
-import androidx.room.Update;
+import androidx.room.Transaction;
 
 import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskWithProject;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Data Access Object (DAO) interface for accessing Task entities from the database.
  * This interface provides methods for CRUD operations related to Task entities.
  * It is used by the database to generate the queries to interact with the Task table.
+ *
+ * Deleting a task only sets its deletedAt column: the row is kept as a tombstone, left out of every read and of the partial indexes,
+ * so that it can be restored, until it is purged in batches by {@link #purgeDeletedTasks(long, int)}.
  */
 @Dao
 
 public interface TaskDao {
 
+    /**
+     * Maximum number of IDs bound to a single statement, below the SQLite limit of 999 bind arguments.
+     */
+    int MAX_IDS_PER_STATEMENT = 500;
+
+    /**
+     * SQL expression of the current time in milliseconds, the unit of the timestamps of the Task table.
+     */
+    String NOW_MILLIS = "(strftime('%s', 'now') * 1000)";
+
+    /**
+     * Beginning of the queries loading the rows of the list of tasks: the displayed columns of each task joined with its project.
+     * The project of each task is found through the primary key of the Project table, the order of the rows is given by the Task table.
+     */
+    String SELECT_TASK_WITH_PROJECT = "SELECT Task.id, Task.name, Task.creationTimestamp, Project.name AS projectName, Project.color AS projectColor " +
+            "FROM Task JOIN Project ON Project.id = Task.projectId ";
+
     /**
      * Inserts or replaces a Task entity into the database.
      * If a task with the same ID already exists in the database, it will be replaced.
@@ -35,7 +59,7 @@ public interface TaskDao {
      * @param projectId The ID of the project to retrieve tasks for.
      * @return A LiveData object containing a list of Task entities with the specified project ID, or null if no tasks with the given project ID exist.
      */
-    @Query("SELECT * FROM Task WHERE projectId = :projectId")
+    @Query("SELECT * FROM Task WHERE projectId = :projectId AND deletedAt IS NULL")
 
     LiveData<List<Task>> getTasks(long projectId);
 
@@ -44,10 +68,157 @@ public interface TaskDao {
      *
      * @return A LiveData object containing a list of all Task entities stored in the database.
      */
-   @Query("SELECT * FROM Task")
+   @Query("SELECT * FROM Task WHERE deletedAt IS NULL")
 
    LiveData<List<Task>> getAllTasks();
 
+    /**
+     * Retrieves a paged data source of the rows of all tasks in insertion order.
+     * Only the pages around the visible window are loaded from the database.
+     *
+     * @return A DataSource.Factory providing the rows of all tasks ordered by ID.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.deletedAt IS NULL ORDER BY Task.id ASC")
+
+    DataSource.Factory<Integer, TaskWithProject> getAllTasksById();
+
+    /**
+     * Retrieves the first rows of all tasks in insertion order, synchronously.
+     * Reads the same rows as the first page of {@link #getAllTasksById()}, the list displayed when the app starts.
+     *
+     * @param count The maximum number of rows to retrieve.
+     * @return The list of the first rows of all tasks ordered by ID.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.deletedAt IS NULL ORDER BY Task.id ASC LIMIT :count")
+
+    List<TaskWithProject> getFirstTasksById(int count);
+
+    /**
+     * Retrieves a paged data source of the rows of all tasks sorted by name, from A to Z.
+     * The ordering is resolved by SQLite through the index on the name column.
+     *
+     * @return A DataSource.Factory providing the rows of all tasks sorted by ascending name.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.deletedAt IS NULL ORDER BY Task.name ASC")
+
+    DataSource.Factory<Integer, TaskWithProject> getAllTasksByNameAsc();
+
+    /**
+     * Retrieves a paged data source of the rows of all tasks sorted by name, from Z to A.
+     * The ordering is resolved by SQLite through the index on the name column.
+     *
+     * @return A DataSource.Factory providing the rows of all tasks sorted by descending name.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.deletedAt IS NULL ORDER BY Task.name DESC")
+
+    DataSource.Factory<Integer, TaskWithProject> getAllTasksByNameDesc();
+
+    /**
+     * Retrieves a paged data source of the rows of all tasks sorted from first created to last created.
+     * The ordering is resolved by SQLite through the index on the creationTimestamp column.
+     *
+     * @return A DataSource.Factory providing the rows of all tasks sorted by ascending creation timestamp.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.deletedAt IS NULL ORDER BY Task.creationTimestamp ASC")
+
+    DataSource.Factory<Integer, TaskWithProject> getAllTasksByCreationTimestampAsc();
+
+    /**
+     * Retrieves a paged data source of the rows of all tasks sorted from last created to first created.
+     * The ordering is resolved by SQLite through the index on the creationTimestamp column.
+     *
+     * @return A DataSource.Factory providing the rows of all tasks sorted by descending creation timestamp.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.deletedAt IS NULL ORDER BY Task.creationTimestamp DESC")
+
+    DataSource.Factory<Integer, TaskWithProject> getAllTasksByCreationTimestampDesc();
+
+    /**
+     * Retrieves a paged data source of the rows of the tasks of the specified project, in insertion order.
+     * Only the range of the index on the projectId column matching the project is read.
+     *
+     * @param projectId The ID of the project to retrieve tasks for.
+     * @return A DataSource.Factory providing the rows of the tasks of the project ordered by ID.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.projectId = :projectId AND Task.deletedAt IS NULL ORDER BY Task.id ASC")
+
+    DataSource.Factory<Integer, TaskWithProject> getProjectTasksById(long projectId);
+
+    /**
+     * Retrieves a paged data source of the rows of the tasks of the specified project, sorted by name from A to Z.
+     * The filtering and the ordering are resolved by SQLite through the index on the projectId and name columns.
+     *
+     * @param projectId The ID of the project to retrieve tasks for.
+     * @return A DataSource.Factory providing the rows of the tasks of the project sorted by ascending name.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.projectId = :projectId AND Task.deletedAt IS NULL ORDER BY Task.name ASC")
+
+    DataSource.Factory<Integer, TaskWithProject> getProjectTasksByNameAsc(long projectId);
+
+    /**
+     * Retrieves a paged data source of the rows of the tasks of the specified project, sorted by name from Z to A.
+     * The filtering and the ordering are resolved by SQLite through the index on the projectId and name columns.
+     *
+     * @param projectId The ID of the project to retrieve tasks for.
+     * @return A DataSource.Factory providing the rows of the tasks of the project sorted by descending name.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.projectId = :projectId AND Task.deletedAt IS NULL ORDER BY Task.name DESC")
+
+    DataSource.Factory<Integer, TaskWithProject> getProjectTasksByNameDesc(long projectId);
+
+    /**
+     * Retrieves a paged data source of the rows of the tasks of the specified project, sorted from first created to last created.
+     * The filtering and the ordering are resolved by SQLite through the index on the projectId and creationTimestamp columns.
+     *
+     * @param projectId The ID of the project to retrieve tasks for.
+     * @return A DataSource.Factory providing the rows of the tasks of the project sorted by ascending creation timestamp.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.projectId = :projectId AND Task.deletedAt IS NULL ORDER BY Task.creationTimestamp ASC")
+
+    DataSource.Factory<Integer, TaskWithProject> getProjectTasksByCreationTimestampAsc(long projectId);
+
+    /**
+     * Retrieves a paged data source of the rows of the tasks of the specified project, sorted from last created to first created.
+     * The filtering and the ordering are resolved by SQLite through the index on the projectId and creationTimestamp columns.
+     *
+     * @param projectId The ID of the project to retrieve tasks for.
+     * @return A DataSource.Factory providing the rows of the tasks of the project sorted by descending creation timestamp.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "WHERE Task.projectId = :projectId AND Task.deletedAt IS NULL ORDER BY Task.creationTimestamp DESC")
+
+    DataSource.Factory<Integer, TaskWithProject> getProjectTasksByCreationTimestampDesc(long projectId);
+
+    /**
+     * Retrieves a paged data source of the rows of the tasks whose name matches the given full-text query, ranked by relevance.
+     * The matching is resolved by the full-text index of the TaskFts table, so only the matching tasks are read.
+     * The tasks whose name starts with the searched text come first, then the shortest names, which the query covers the most.
+     * The ranking does not use matchinfo(): a name is a single short column in which each searched word is almost always found once,
+     * so its hit counts would rank nearly all the matches equally, and weighting them needs a ranking function that cannot be
+     * registered on the SQLite of the framework. Only the matching rows are ordered, so the cost grows with the number of matches.
+     *
+     * @param matchQuery The full-text query, for example "bur* dir*".
+     * @param namePrefix The searched text, with LIKE wildcards escaped by a backslash.
+     * @return A DataSource.Factory providing the rows of the matching tasks, the most relevant first.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "JOIN TaskFts ON Task.id = TaskFts.rowid WHERE TaskFts MATCH :matchQuery AND Task.deletedAt IS NULL " +
+            "ORDER BY (Task.name LIKE :namePrefix || '%' ESCAPE '\\') DESC, length(Task.name) ASC, Task.id ASC")
+
+    DataSource.Factory<Integer, TaskWithProject> searchTasks(String matchQuery, String namePrefix);
+
+    /**
+     * Retrieves a paged data source of the rows of the tasks of the specified project whose name matches the given full-text query,
+     * ranked like {@link #searchTasks(String, String)}.
+     *
+     * @param matchQuery The full-text query, for example "bur* dir*".
+     * @param namePrefix The searched text, with LIKE wildcards escaped by a backslash.
+     * @param projectId  The ID of the project to search tasks in.
+     * @return A DataSource.Factory providing the rows of the matching tasks of the project, the most relevant first.
+     */
+    @Query(SELECT_TASK_WITH_PROJECT + "JOIN TaskFts ON Task.id = TaskFts.rowid WHERE TaskFts MATCH :matchQuery AND Task.projectId = :projectId AND Task.deletedAt IS NULL " +
+            "ORDER BY (Task.name LIKE :namePrefix || '%' ESCAPE '\\') DESC, length(Task.name) ASC, Task.id ASC")
+
+    DataSource.Factory<Integer, TaskWithProject> searchProjectTasks(String matchQuery, String namePrefix, long projectId);
+
     /**
      * Inserts a new task into the database.
      *
@@ -59,23 +230,210 @@ public interface TaskDao {
     long insertTask(Task task);
 
     /**
-     * Updates an existing task in the database.
+     * Updates the columns of an existing task which is not deleted, with a single statement.
+     * The deletedAt column is never written, so that an update applied after the deletion of the task does not restore it.
+     *
+     * @param taskId            The ID of the task to be updated.
+     * @param projectId         The ID of the project of the task.
+     * @param name              The name of the task.
+     * @param creationTimestamp The creation timestamp of the task.
+     * @param isSelected        Whether the task is selected.
+     * @return The number of rows affected by the update operation, 0 if the task does not exist or is deleted.
+     */
+    @Query("UPDATE Task SET projectId = :projectId, name = :name, creationTimestamp = :creationTimestamp, isSelected = :isSelected " +
+            "WHERE id = :taskId AND deletedAt IS NULL")
+
+    int updateLiveTask(long taskId, long projectId, String name, long creationTimestamp, Boolean isSelected);
+
+    /**
+     * Updates an existing task in the database, unless it is deleted.
      *
      * @param task The task to be updated in the database.
      * @return The number of rows affected by the update operation.
      */
-    @Update
-
-    int updateTask(Task task);
+    default int updateTask(Task task) {
+        return updateLiveTask(task.getId(), task.getProjectId(), task.getName(), task.getCreationTimestamp(), task.getSelected());
+    }
 
     /**
-     * Deletes a task with the specified ID from the database.
+     * Deletes a task with the specified ID from the database, by marking it as deleted.
+     * Only the deletedAt column is written, and the row leaves the partial indexes.
      *
      * @param taskId The ID of the task to be deleted from the database.
      * @return The number of rows affected by the delete operation.
      */
-    @Query("DELETE FROM Task WHERE id = :taskId")
+    @Query("UPDATE Task SET deletedAt = " + NOW_MILLIS + " WHERE id = :taskId AND deletedAt IS NULL")
 
     int deleteTask(long taskId);
 
+    /**
+     * Inserts a list of new tasks into the database, within a single transaction.
+     *
+     * @param tasks The tasks to be inserted into the database.
+     * @return The IDs of the newly inserted rows in the database, in the order of the given tasks.
+     */
+    @Insert
+
+    long[] insertTasks(List<Task> tasks);
+
+    /**
+     * Updates a list of existing tasks in the database, within a single transaction, except the deleted ones.
+     *
+     * @param tasks The tasks to be updated in the database.
+     * @return The number of rows affected by the update operation.
+     */
+    @Transaction
+
+    default int updateTasks(List<Task> tasks) {
+        int updatedRows = 0;
+        for (Task task : tasks) {
+            updatedRows += updateTask(task);
+        }
+        return updatedRows;
+    }
+
+    /**
+     * Deletes the tasks with the specified IDs from the database with a single statement, by marking them as deleted.
+     * The number of IDs must not exceed {@link #MAX_IDS_PER_STATEMENT}, use {@link #deleteTasksById(Collection)} otherwise.
+     *
+     * @param taskIds The IDs of the tasks to be deleted from the database.
+     * @return The number of rows affected by the delete operation.
+     */
+    @Query("UPDATE Task SET deletedAt = " + NOW_MILLIS + " WHERE id IN (:taskIds) AND deletedAt IS NULL")
+
+    int deleteTasks(List<Long> taskIds);
+
+    /**
+     * Deletes the tasks with the specified IDs from the database, within a single transaction.
+     * The IDs are split into chunks to stay below the SQLite limit of bind arguments.
+     *
+     * @param taskIds The IDs of the tasks to be deleted from the database.
+     * @return The number of rows affected by the delete operation.
+     */
+    @Transaction
+
+    default int deleteTasksById(Collection<Long> taskIds) {
+        int deletedRows = 0;
+        List<Long> chunk = new ArrayList<>(Math.min(taskIds.size(), MAX_IDS_PER_STATEMENT));
+        for (Long taskId : taskIds) {
+            chunk.add(taskId);
+            if (chunk.size() == MAX_IDS_PER_STATEMENT) {
+                deletedRows += deleteTasks(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            deletedRows += deleteTasks(chunk);
+        }
+        return deletedRows;
+    }
+
+    /**
+     * Restores the deleted tasks with the specified IDs, with a single statement.
+     * The number of IDs must not exceed {@link #MAX_IDS_PER_STATEMENT}, use {@link #restoreTasksById(Collection)} otherwise.
+     *
+     * @param taskIds The IDs of the tasks to be restored.
+     * @return The number of rows affected by the update operation.
+     */
+    @Query("UPDATE Task SET deletedAt = NULL WHERE id IN (:taskIds) AND deletedAt IS NOT NULL")
+
+    int restoreTasks(List<Long> taskIds);
+
+    /**
+     * Restores the deleted tasks with the specified IDs, within a single transaction, as long as they have not been purged.
+     * The IDs are split into chunks to stay below the SQLite limit of bind arguments.
+     *
+     * @param taskIds The IDs of the tasks to be restored.
+     * @return The number of rows affected by the update operation.
+     */
+    @Transaction
+
+    default int restoreTasksById(Collection<Long> taskIds) {
+        int restoredRows = 0;
+        List<Long> chunk = new ArrayList<>(Math.min(taskIds.size(), MAX_IDS_PER_STATEMENT));
+        for (Long taskId : taskIds) {
+            chunk.add(taskId);
+            if (chunk.size() == MAX_IDS_PER_STATEMENT) {
+                restoredRows += restoreTasks(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            restoredRows += restoreTasks(chunk);
+        }
+        return restoredRows;
+    }
+
+    /**
+     * Purges a batch of the tasks deleted before the specified time, removing their rows for good.
+     * The tombstones are found through the partial index of the deleted tasks, the oldest first.
+     *
+     * @param deletedBefore The time, in milliseconds, before which the tasks have been deleted.
+     * @param count         The maximum number of tasks to purge.
+     * @return The number of purged rows, lower than the count when no other task has to be purged.
+     */
+    @Query("DELETE FROM Task WHERE id IN (SELECT id FROM Task WHERE deletedAt <= :deletedBefore ORDER BY deletedAt LIMIT :count)")
+
+    int purgeDeletedTasks(long deletedBefore, int count);
+
+    /**
+     * Moves the tasks with the specified IDs to the specified project, with a single statement, except the deleted ones.
+     * The number of IDs must not exceed {@link #MAX_IDS_PER_STATEMENT}, use {@link #moveTasksById(Collection, long)} otherwise.
+     *
+     * @param taskIds   The IDs of the tasks to be moved.
+     * @param projectId The ID of the project the tasks are moved to.
+     * @return The number of rows affected by the update operation.
+     */
+    @Query("UPDATE Task SET projectId = :projectId WHERE id IN (:taskIds) AND deletedAt IS NULL")
+
+    int moveTasks(List<Long> taskIds, long projectId);
+
+    /**
+     * Moves the tasks with the specified IDs to the specified project, within a single transaction.
+     * The IDs are split into chunks to stay below the SQLite limit of bind arguments.
+     *
+     * @param taskIds   The IDs of the tasks to be moved.
+     * @param projectId The ID of the project the tasks are moved to.
+     * @return The number of rows affected by the update operation.
+     */
+    @Transaction
+
+    default int moveTasksById(Collection<Long> taskIds, long projectId) {
+        int movedRows = 0;
+        List<Long> chunk = new ArrayList<>(Math.min(taskIds.size(), MAX_IDS_PER_STATEMENT));
+        for (Long taskId : taskIds) {
+            chunk.add(taskId);
+            if (chunk.size() == MAX_IDS_PER_STATEMENT) {
+                movedRows += moveTasks(chunk, projectId);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            movedRows += moveTasks(chunk, projectId);
+        }
+        return movedRows;
+    }
+
+    /**
+     * Applies a batch of writes to the database, within a single transaction, so that they are committed at once
+     * and the observers of the Task table are notified once.
+     * The tasks are inserted first, then updated, then marked as deleted.
+     *
+     * @param insertedTasks  The tasks to be inserted into the database.
+     * @param updatedTasks   The tasks to be updated in the database.
+     * @param deletedTaskIds The IDs of the tasks to be deleted from the database.
+     * @return The IDs of the newly inserted rows in the database, in the order of the inserted tasks.
+     */
+    @Transaction
+
+    default long[] applyWrites(List<Task> insertedTasks, List<Task> updatedTasks, Collection<Long> deletedTaskIds) {
+        long[] insertedIds = insertedTasks.isEmpty() ? new long[0] : insertTasks(insertedTasks);
+        if (!updatedTasks.isEmpty()) {
+            updateTasks(updatedTasks);
+        }
+        if (!deletedTaskIds.isEmpty()) {
+            deleteTasksById(deletedTaskIds);
+        }
+        return insertedIds;
+    }
 }
@@ -2,23 +2,37 @@ package com.cleanup.todoc.database;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.os.CancellationSignal;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SimpleSQLiteQuery;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
 
+import com.cleanup.todoc.BuildConfig;
+import com.cleanup.todoc.R;
 import com.cleanup.todoc.models.Project;
 import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskFts;
+
+import java.io.IOException;
 
 /**
  * Database class representing the main database for the Todoc application.
  * This class extends RoomDatabase and serves as the entry point for accessing DAO instances.
  * It defines the entities that compose the database and provides a singleton instance to access the database.
  */
-@Database(entities = {Project.class, Task.class}, version = 1, exportSchema = false)
+@Database(entities = {Project.class, Task.class, TaskFts.class}, version = 11, exportSchema = false)
 
 public abstract class TodocDatabase extends RoomDatabase {
 
@@ -33,6 +47,283 @@ public abstract class TodocDatabase extends RoomDatabase {
     // --- SINGLETON ---
     private static volatile TodocDatabase INSTANCE;
 
+    /**
+     * Path in the assets of the prepackaged database, built from app/database/todoc.sql by the generatePrepackagedDatabase task.
+     * It already holds the schema, the indexes and the reference data, so that the first launch only copies a file.
+     */
+    static final String PREPACKAGED_DATABASE_ASSET = "database/todoc.db";
+
+    /**
+     * Registry of the latency of the statements executed on the database, or null when the metrics are disabled,
+     * in which case the statements are run without any measurement.
+     */
+    @Nullable
+    private volatile QueryMetrics queryMetrics;
+
+    /**
+     * Partial indexes of the Task table, which only index the tasks which are not deleted, and the deleted ones for their purge.
+     * The ordered and per-project queries of TaskDao filter the deleted tasks out, so SQLite serves them with these indexes,
+     * which do not grow with the tombstones and are not written when a task is deleted.
+     *
+     * Room cannot declare partial indexes and validates the indexes of the tables after a migration, so they are created
+     * each time the database is opened, and every migration from version 5 on must drop them first with {@link #dropPartialIndexes(SupportSQLiteDatabase)}.
+     */
+    private static final String[] PARTIAL_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS `index_Task_live_name` ON `Task` (`name`) WHERE `deletedAt` IS NULL",
+            "CREATE INDEX IF NOT EXISTS `index_Task_live_creationTimestamp` ON `Task` (`creationTimestamp`) WHERE `deletedAt` IS NULL",
+            "CREATE INDEX IF NOT EXISTS `index_Task_live_projectId_name` ON `Task` (`projectId`, `name`) WHERE `deletedAt` IS NULL",
+            "CREATE INDEX IF NOT EXISTS `index_Task_live_projectId_creationTimestamp` ON `Task` (`projectId`, `creationTimestamp`) WHERE `deletedAt` IS NULL",
+            "CREATE INDEX IF NOT EXISTS `index_Task_deletedAt` ON `Task` (`deletedAt`) WHERE `deletedAt` IS NOT NULL"
+    };
+
+    /**
+     * Names of the partial indexes of the Task table.
+     */
+    private static final String[] PARTIAL_INDEX_NAMES = {
+            "index_Task_live_name", "index_Task_live_creationTimestamp", "index_Task_live_projectId_name",
+            "index_Task_live_projectId_creationTimestamp", "index_Task_deletedAt"
+    };
+
+    /**
+     * Triggers keeping the full-text search table in sync with the tasks which are not deleted.
+     * The triggers Room creates index every row of the Task table: deleting a task, which only sets its deletedAt column,
+     * would index it again, and the tombstones would stay in the index until their purge.
+     * These only index a row while it is not deleted, so a deletion removes it from the index, and a restore indexes it again.
+     * The index is then built with the rows which are not deleted rather than with 'rebuild', which would index every row.
+     *
+     * Room does not validate the triggers, so they replace its own each time the database is opened with {@link #replaceFtsSyncTriggers(SupportSQLiteDatabase)}.
+     */
+    private static final String[] FTS_SYNC_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS `TaskFts_live_BEFORE_UPDATE` BEFORE UPDATE ON `Task` WHEN OLD.`deletedAt` IS NULL BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS `TaskFts_live_BEFORE_DELETE` BEFORE DELETE ON `Task` WHEN OLD.`deletedAt` IS NULL BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS `TaskFts_live_AFTER_UPDATE` AFTER UPDATE ON `Task` WHEN NEW.`deletedAt` IS NULL BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END",
+            "CREATE TRIGGER IF NOT EXISTS `TaskFts_live_AFTER_INSERT` AFTER INSERT ON `Task` WHEN NEW.`deletedAt` IS NULL BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END"
+    };
+
+    /**
+     * Names of the triggers Room creates to keep the full-text search table in sync with every row of the Task table.
+     */
+    private static final String[] ROOM_FTS_SYNC_TRIGGER_NAMES = {
+            "room_fts_content_sync_TaskFts_BEFORE_UPDATE", "room_fts_content_sync_TaskFts_BEFORE_DELETE",
+            "room_fts_content_sync_TaskFts_AFTER_UPDATE", "room_fts_content_sync_TaskFts_AFTER_INSERT"
+    };
+
+    // --- MIGRATIONS ---
+
+    /**
+     * Migration from version 1 to version 2 of the database.
+     * Adds the indexes on the name and creationTimestamp columns of the Task table,
+     * used by the ordered queries of TaskDao.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_name` ON `Task` (`name`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_creationTimestamp` ON `Task` (`creationTimestamp`)");
+        }
+    };
+
+    /**
+     * Migration from version 2 to version 3 of the database.
+     * Adds the full-text search table indexing the names of the tasks, with the triggers Room uses to keep it in sync,
+     * then indexes the existing tasks.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `TaskFts` USING FTS4(`name` TEXT NOT NULL, content=`Task`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_BEFORE_UPDATE BEFORE UPDATE ON `Task` BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_BEFORE_DELETE BEFORE DELETE ON `Task` BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_AFTER_UPDATE AFTER UPDATE ON `Task` BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_AFTER_INSERT AFTER INSERT ON `Task` BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("INSERT INTO `TaskFts`(`TaskFts`) VALUES ('rebuild')");
+        }
+    };
+
+    /**
+     * Migration from version 3 to version 4 of the database.
+     * Adds the indexes on the projectId column of the Task table, alone and followed by the sort columns,
+     * used by the per-project queries of TaskDao and by the foreign key checks.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_projectId` ON `Task` (`projectId`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_projectId_name` ON `Task` (`projectId`, `name`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_projectId_creationTimestamp` ON `Task` (`projectId`, `creationTimestamp`)");
+        }
+    };
+
+    /**
+     * Migration from version 4 to version 5 of the database.
+     * Rebuilds the Task table so that its name column is compared with the LOCALIZED collation (SQLite cannot alter a column),
+     * then recreates its indexes, which now order the names according to the rules of the user's language,
+     * and the triggers keeping the full-text search table in sync. The IDs are kept, so the full-text index stays valid.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `Task_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `projectId` INTEGER NOT NULL, " +
+                    "`name` TEXT NOT NULL COLLATE LOCALIZED, `creationTimestamp` INTEGER NOT NULL, `isSelected` INTEGER, " +
+                    "FOREIGN KEY(`projectId`) REFERENCES `Project`(`id`) ON UPDATE NO ACTION ON DELETE NO ACTION )");
+            database.execSQL("INSERT INTO `Task_new` (`id`, `projectId`, `name`, `creationTimestamp`, `isSelected`) " +
+                    "SELECT `id`, `projectId`, `name`, `creationTimestamp`, `isSelected` FROM `Task`");
+            database.execSQL("DROP TABLE `Task`"); // Drops its indexes and triggers too
+            database.execSQL("ALTER TABLE `Task_new` RENAME TO `Task`");
+
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_name` ON `Task` (`name`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_creationTimestamp` ON `Task` (`creationTimestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_projectId` ON `Task` (`projectId`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_projectId_name` ON `Task` (`projectId`, `name`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Task_projectId_creationTimestamp` ON `Task` (`projectId`, `creationTimestamp`)");
+
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_BEFORE_UPDATE BEFORE UPDATE ON `Task` BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_BEFORE_DELETE BEFORE DELETE ON `Task` BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_AFTER_UPDATE AFTER UPDATE ON `Task` BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_AFTER_INSERT AFTER INSERT ON `Task` BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+        }
+    };
+
+    /**
+     * Migration from version 5 to version 6 of the database.
+     * Adds the deletedAt column of the Task table, deleted tasks being kept as tombstones until they are purged,
+     * and drops the indexes of the ordered and per-project queries, replaced by the partial indexes created when the database is opened.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropPartialIndexes(database);
+            database.execSQL("ALTER TABLE `Task` ADD COLUMN `deletedAt` INTEGER");
+
+            database.execSQL("DROP INDEX IF EXISTS `index_Task_name`");
+            database.execSQL("DROP INDEX IF EXISTS `index_Task_creationTimestamp`");
+            database.execSQL("DROP INDEX IF EXISTS `index_Task_projectId_name`");
+            database.execSQL("DROP INDEX IF EXISTS `index_Task_projectId_creationTimestamp`");
+        }
+    };
+
+    /**
+     * Migration from version 6 to version 7 of the database.
+     * Adds the ArchivedTask table, with the same columns as the Task table, to which the old tasks were moved in the background.
+     * The archive could not be shown, so its tasks are moved back and the table is dropped by {@link #MIGRATION_10_11}.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropPartialIndexes(database);
+            database.execSQL("CREATE TABLE IF NOT EXISTS `ArchivedTask` (`id` INTEGER NOT NULL, `projectId` INTEGER NOT NULL, " +
+                    "`name` TEXT NOT NULL COLLATE LOCALIZED, `creationTimestamp` INTEGER NOT NULL, `isSelected` INTEGER, `deletedAt` INTEGER, " +
+                    "PRIMARY KEY(`id`), FOREIGN KEY(`projectId`) REFERENCES `Project`(`id`) ON UPDATE NO ACTION ON DELETE NO ACTION )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_ArchivedTask_projectId_creationTimestamp` ON `ArchivedTask` (`projectId`, `creationTimestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_ArchivedTask_creationTimestamp` ON `ArchivedTask` (`creationTimestamp`)");
+        }
+    };
+
+    /**
+     * Migration from version 7 to version 8 of the database.
+     * Recreates the full-text search table with the unicode61 tokenizer, which folds the case and the accents of all the letters
+     * (the simple tokenizer only lower-cases ASCII ones, so "État" could not be found), with the triggers keeping it in sync,
+     * then indexes the existing tasks again.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropPartialIndexes(database);
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_TaskFts_BEFORE_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_TaskFts_BEFORE_DELETE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_TaskFts_AFTER_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_TaskFts_AFTER_INSERT");
+            database.execSQL("DROP TABLE IF EXISTS `TaskFts`");
+
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `TaskFts` USING FTS4(`name` TEXT NOT NULL, tokenize=unicode61, content=`Task`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_BEFORE_UPDATE BEFORE UPDATE ON `Task` BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_BEFORE_DELETE BEFORE DELETE ON `Task` BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_AFTER_UPDATE AFTER UPDATE ON `Task` BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_AFTER_INSERT AFTER INSERT ON `Task` BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("INSERT INTO `TaskFts`(`TaskFts`) VALUES ('rebuild')");
+        }
+    };
+
+    /**
+     * Migration from version 8 to version 9 of the database.
+     * Recreates the full-text search table with the index of the prefixes of 2 and 3 letters of the words,
+     * with the triggers keeping it in sync, then indexes the existing tasks again.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropPartialIndexes(database);
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_TaskFts_BEFORE_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_TaskFts_BEFORE_DELETE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_TaskFts_AFTER_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_TaskFts_AFTER_INSERT");
+            database.execSQL("DROP TABLE IF EXISTS `TaskFts`");
+
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `TaskFts` USING FTS4(`name` TEXT NOT NULL, tokenize=unicode61, content=`Task`, prefix=`2,3`)");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_BEFORE_UPDATE BEFORE UPDATE ON `Task` BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_BEFORE_DELETE BEFORE DELETE ON `Task` BEGIN DELETE FROM `TaskFts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_AFTER_UPDATE AFTER UPDATE ON `Task` BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_TaskFts_AFTER_INSERT AFTER INSERT ON `Task` BEGIN INSERT INTO `TaskFts`(`docid`, `name`) VALUES (NEW.`rowid`, NEW.`name`); END");
+            database.execSQL("INSERT INTO `TaskFts`(`TaskFts`) VALUES ('rebuild')");
+        }
+    };
+
+    /**
+     * Migration from version 9 to version 10 of the database.
+     * Replaces the triggers of Room keeping the full-text search table in sync with the ones which skip the deleted tasks,
+     * then removes the deleted tasks from the index. Their rows are still in the Task table, with the name they were indexed with.
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropPartialIndexes(database);
+            replaceFtsSyncTriggers(database);
+            database.execSQL("DELETE FROM `TaskFts` WHERE `docid` IN (SELECT `id` FROM `Task` WHERE `deletedAt` IS NOT NULL)");
+        }
+    };
+
+    /**
+     * Migration from version 10 to version 11 of the database.
+     * Moves the archived tasks back to the Task table, where they are indexed for the search by its triggers, then drops the ArchivedTask table
+     * and its indexes: the app has no screen to show the archive.
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            dropPartialIndexes(database);
+            database.execSQL("INSERT INTO `Task` (`id`, `projectId`, `name`, `creationTimestamp`, `isSelected`, `deletedAt`) " +
+                    "SELECT `id`, `projectId`, `name`, `creationTimestamp`, `isSelected`, `deletedAt` FROM `ArchivedTask`");
+            database.execSQL("DROP TABLE IF EXISTS `ArchivedTask`");
+        }
+    };
+
+    /**
+     * Replaces the triggers Room creates to keep the full-text search table in sync by the ones which skip the deleted tasks.
+     * Called by the migration to version 10, then each time the database is opened, since Room creates its triggers with the tables.
+     *
+     * @param database The database.
+     */
+    static void replaceFtsSyncTriggers(@NonNull SupportSQLiteDatabase database) {
+        for (String triggerName : ROOM_FTS_SYNC_TRIGGER_NAMES) {
+            database.execSQL("DROP TRIGGER IF EXISTS `" + triggerName + "`");
+        }
+        for (String trigger : FTS_SYNC_TRIGGERS) {
+            database.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Drops the partial indexes of the Task table, which Room does not know about.
+     * Called first by every migration from version 5 on, they are created again when the database is opened.
+     *
+     * @param database The database being migrated.
+     */
+    static void dropPartialIndexes(@NonNull SupportSQLiteDatabase database) {
+        for (String indexName : PARTIAL_INDEX_NAMES) {
+            database.execSQL("DROP INDEX IF EXISTS `" + indexName + "`");
+        }
+    }
+
     // --- DAO ---
 
     /**
@@ -49,6 +340,45 @@ public abstract class TodocDatabase extends RoomDatabase {
      */
     public abstract TaskDao taskDao();
 
+    // --- METRICS ---
+
+    /**
+     * Returns the registry of the latency of the statements executed on the database.
+     *
+     * @return The registry, or null when the metrics are disabled.
+     */
+    @Nullable
+    public QueryMetrics getQueryMetrics() {
+        return queryMetrics;
+    }
+
+    @NonNull
+    @Override
+    public Cursor query(@NonNull String query, @Nullable Object[] args) {
+        return query(new SimpleSQLiteQuery(query, args), null); // Measured like the queries of the DAOs
+    }
+
+    @NonNull
+    @Override
+    public Cursor query(@NonNull SupportSQLiteQuery query, @Nullable CancellationSignal signal) {
+        QueryMetrics metrics = queryMetrics;
+        if (metrics == null) {
+            return super.query(query, signal);
+        }
+        long startNanos = System.nanoTime();
+        return new MeasuredCursor(super.query(query, signal), metrics, query.getSql(), startNanos);
+    }
+
+    @NonNull
+    @Override
+    public SupportSQLiteStatement compileStatement(@NonNull String sql) {
+        QueryMetrics metrics = queryMetrics;
+        if (metrics == null) {
+            return super.compileStatement(sql);
+        }
+        return new MeasuredStatement(super.compileStatement(sql), metrics, sql);
+    }
+
     /**
      * Retrieves the singleton instance of TodocDatabase.
      *
@@ -60,19 +390,69 @@ public abstract class TodocDatabase extends RoomDatabase {
         if (INSTANCE == null) {
             synchronized (TodocDatabase.class) {
                 if (INSTANCE == null) {
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
+                    DatabaseExecutors executors = DatabaseExecutors.getInstance();
+                    Builder<TodocDatabase> builder = Room.databaseBuilder(context.getApplicationContext(),
                             TodocDatabase.class, "MyDatabase.db") // Read the TodocDatabase class and create a database (MyDatabase.db = file with all the information, only one file)
-                            .allowMainThreadQueries() // Allow queries on the main thread
-                            .addCallback(prepopulateDatabase()) // Calling the prepopulateDatabase() function after the creation of the database (allows pre-filling the database with initial data)
-                            .build();
+                            .setQueryExecutor(executors.queryExecutor()) // Reads are served by their own threads...
+                            .setTransactionExecutor(executors.transactionExecutor()) // ...and are never queued behind writes
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING); // Readers run alongside the writer instead of waiting for its commit
+                    addMigrationsAndCallbacks(builder, context);
+                    if (hasPrepackagedDatabase(context)) {
+                        builder.createFromAsset(PREPACKAGED_DATABASE_ASSET); // Copied on the first launch, onCreate (and so the prepopulation) is then skipped
+                    }
+                    if (BuildConfig.DEBUG) {
+                        builder.setQueryCallback(new MainThreadQueryGuard(), Runnable::run); // Fail fast on any statement executed on the main thread
+                    }
+                    TodocDatabase database = builder.build();
+                    Resources resources = context.getResources();
+                    if (resources.getBoolean(R.bool.database_query_metrics_enabled)) {
+                        database.queryMetrics = new QueryMetrics(resources.getInteger(R.integer.database_slow_query_threshold_ms));
+                    }
+                    INSTANCE = database;
                 }
             }
         }
         return INSTANCE;
     }
 
+    /**
+     * Adds the migrations and the callbacks of the database to the given builder.
+     * Used by {@link #getInstance(Context)}, and by the tests which open the database the way the app does.
+     *
+     * @param builder The builder of the database.
+     * @param context The application context.
+     * @return The builder.
+     */
+    @VisibleForTesting
+    @NonNull
+    public static Builder<TodocDatabase> addMigrationsAndCallbacks(@NonNull Builder<TodocDatabase> builder, @NonNull Context context) {
+        return builder
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11) // Keep the existing tasks when the schema evolves
+                .addCallback(prepopulateDatabase()) // Calling the prepopulateDatabase() function after the creation of the database (allows pre-filling the database with initial data)
+                .addCallback(tuneConnection(context.getResources())) // Applying the tuning PRAGMAs to the primary connection each time the database is opened
+                .addCallback(createPartialIndexes()) // Creating the partial indexes Room cannot declare, once the schema has been validated
+                .addCallback(syncFtsWithLiveTasks()); // Replacing the full-text search triggers of Room, which would index the deleted tasks
+    }
+
+    /**
+     * Returns whether the prepackaged database is part of the assets of the app.
+     * When it is missing, the database is created by Room and prepopulated by the callback instead.
+     *
+     * @param context The application context.
+     * @return True if the prepackaged database can be copied.
+     */
+    private static boolean hasPrepackagedDatabase(Context context) {
+        try {
+            context.getAssets().open(PREPACKAGED_DATABASE_ASSET).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     /**
      * Prepopulates the database with a list of projects when the database is created.
+     * It is the fallback of the prepackaged database: it only runs when the database has not been copied from the assets.
      *
      * @return A callback that prepopulates the database with a list of projects.
      */
@@ -90,4 +470,66 @@ public abstract class TodocDatabase extends RoomDatabase {
             }
         };
     }
+
+    /**
+     * Creates the partial indexes of the Task table each time the database is opened, if they do not exist yet.
+     * They are missing after the creation of the database, its copy from the assets, or a migration.
+     *
+     * @return A callback that creates the partial indexes.
+     */
+    private static Callback createPartialIndexes() {
+        return new Callback() {
+            @Override
+            public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                super.onOpen(db);
+
+                for (String partialIndex : PARTIAL_INDEXES) {
+                    db.execSQL(partialIndex);
+                }
+            }
+        };
+    }
+
+    /**
+     * Replaces the triggers keeping the full-text search table in sync each time the database is opened.
+     * Room creates its own triggers with the tables, when the database is created without the prepackaged one.
+     *
+     * @return A callback that replaces the triggers of the full-text search table.
+     */
+    private static Callback syncFtsWithLiveTasks() {
+        return new Callback() {
+            @Override
+            public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                super.onOpen(db);
+
+                replaceFtsSyncTriggers(db);
+            }
+        };
+    }
+
+    /**
+     * Applies the tuning PRAGMAs defined in the configuration each time the database is opened.
+     * These settings are per connection, and they only reach the primary connection of the framework pool:
+     * it runs every write transaction, and the reads made while it is free. The framework gives no way to run a statement
+     * on the other connections of the WAL pool, which serve most of the paged reads with the default cache of SQLite.
+     * synchronous only matters for the commits, so it applies to every write.
+     *
+     * @param resources The resources holding the configuration.
+     * @return A callback that applies the tuning PRAGMAs.
+     */
+    private static Callback tuneConnection(Resources resources) {
+        final int cacheSizeKib = resources.getInteger(R.integer.database_cache_size_kib);
+        final String synchronous = resources.getString(R.string.database_synchronous);
+        final String tempStore = resources.getString(R.string.database_temp_store);
+        return new Callback() {
+            @Override
+            public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                super.onOpen(db);
+
+                db.execSQL("PRAGMA cache_size = -" + cacheSizeKib); // A negative value is a size in KiB instead of a number of pages, used by the primary connection only
+                db.execSQL("PRAGMA synchronous = " + synchronous); // NORMAL is safe with WAL: a power loss may only roll back the last commits
+                db.execSQL("PRAGMA temp_store = " + tempStore); // The SQLite of Android already keeps the temporary tables in memory on every connection, this only states it
+            }
+        };
+    }
 }
@@ -3,16 +3,21 @@ package com.cleanup.todoc.injection;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 import androidx.lifecycle.ViewModel;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.work.WorkManager;
 
+import com.cleanup.todoc.R;
+import com.cleanup.todoc.database.DatabaseExecutors;
 import com.cleanup.todoc.database.TodocDatabase;
+import com.cleanup.todoc.models.ProjectRegistry;
 import com.cleanup.todoc.repositories.ProjectDataRepository;
 import com.cleanup.todoc.repositories.TaskDataRepository;
+import com.cleanup.todoc.repositories.TaskWriteQueue;
 import com.cleanup.todoc.ui.TaskViewModel;
-
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import com.cleanup.todoc.workers.DatabaseMaintenanceWorker;
+import com.cleanup.todoc.workers.TaskCompactionWorker;
 
 /**
  * Factory class for creating ViewModels.
@@ -32,14 +37,15 @@ public class ViewModelFactory implements ViewModelProvider.Factory {
    private final ProjectDataRepository projectDataSource;
 
     /**
-     * Executor used for background tasks.
+     * Queue grouping the background writes of the tasks into transactions.
      */
-   private final Executor executor;
+   private final TaskWriteQueue taskWriteQueue;
 
     /**
      * Singleton instance of the ViewModelFactory.
+     * Volatile because it is built on a background thread when the app starts and read on the main thread.
      */
-   private static ViewModelFactory factory;
+   private static volatile ViewModelFactory factory;
 
     /**
      * Returns the singleton instance of the ViewModelFactory.
@@ -66,9 +72,25 @@ public class ViewModelFactory implements ViewModelProvider.Factory {
      */
     public ViewModelFactory(Context context) {
         TodocDatabase database = TodocDatabase.getInstance(context);
-         this.taskDataSource = new TaskDataRepository(database.taskDao());
+        DatabaseExecutors executors = DatabaseExecutors.getInstance();
+         this.taskDataSource = new TaskDataRepository(database.taskDao(), executors.queryExecutor());
          this.projectDataSource = new ProjectDataRepository(database.projectDao());
-         this.executor = Executors.newSingleThreadExecutor();
+         this.taskWriteQueue = new TaskWriteQueue(taskDataSource, executors.transactionExecutor(),
+                 context.getResources().getInteger(R.integer.task_write_window_ms),
+                 context.getResources().getInteger(R.integer.task_write_max_pending));
+        DatabaseMaintenanceWorker.schedule(context.getApplicationContext()); // Checkpoints the WAL and optimizes the database when the device is idle
+        TaskCompactionWorker.schedule(context.getApplicationContext()); // Purges the deleted tasks when the device is idle
+        WorkManager.getInstance(context.getApplicationContext()).cancelUniqueWork("task-archive"); // The former archive job, whose worker no longer exists
+    }
+
+    /**
+     * Warms the database before the first screen observes it: the first query opens the database,
+     * copying or migrating it if needed, then the index of the projects is filled and the first page of tasks is read.
+     */
+    @WorkerThread
+    public void warmUp() {
+        ProjectRegistry.getInstance().update(projectDataSource.getProjectList()); // Task.getProject() reads the index of the projects
+        taskDataSource.warmUp();
     }
 
     /**
@@ -85,7 +107,7 @@ public class ViewModelFactory implements ViewModelProvider.Factory {
     public <T extends ViewModel> T create(Class<T> modelClass) {
 
         if (modelClass.isAssignableFrom(TaskViewModel.class)) {
-            return (T) new TaskViewModel(taskDataSource, projectDataSource, executor);
+            return (T) new TaskViewModel(taskDataSource, projectDataSource, taskWriteQueue);
         }
         throw new IllegalArgumentException("Unknown ViewModel class");
     }
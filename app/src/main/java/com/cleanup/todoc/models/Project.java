@@ -66,17 +66,14 @@ public class Project {
 
     /**
      * Retrieves the project with the specified identifier.
+     * The lookup is served by the ProjectRegistry and does not allocate.
      *
      * @param id The unique identifier of the project.
      * @return The Project object with the specified identifier, or null if no project is found.
      */
     @Nullable
     public static Project getProjectById(long id) {
-        for (Project project : getAllProjects()) {
-            if (project.id == id)
-                return project;
-        }
-        return null;
+        return ProjectRegistry.getInstance().getProject(id);
     }
 
     /**
@@ -0,0 +1,95 @@
+package com.cleanup.todoc.models;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LongSparseArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registry of the projects, indexed by their ID.
+ * The index is rebuilt only when the list of projects changes, so that looking up the project of a task
+ * is a binary search on primitive keys which does not allocate.
+ */
+public class ProjectRegistry {
+
+    /**
+     * Singleton instance of the ProjectRegistry class.
+     * It is seeded with the hard-coded list of projects until the database provides its own list.
+     */
+    private static final ProjectRegistry INSTANCE = new ProjectRegistry(Arrays.asList(Project.getAllProjects()));
+
+    /**
+     * Current index of the projects by ID.
+     * A new index is built on each update and never modified afterwards, so it can be read from any thread.
+     */
+    @NonNull
+    private volatile LongSparseArray<Project> projects;
+
+    /**
+     * Constructor for creating a ProjectRegistry object.
+     *
+     * @param projects The initial list of projects to index.
+     */
+    ProjectRegistry(@NonNull List<Project> projects) {
+        this.projects = index(projects);
+    }
+
+    /**
+     * Returns the singleton instance of the ProjectRegistry.
+     *
+     * @return The singleton instance of the ProjectRegistry.
+     */
+    @NonNull
+    public static ProjectRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Rebuilds the index from the given list of projects.
+     * This method is meant to be called each time the list of projects stored in the database changes.
+     *
+     * @param projects The list of all projects.
+     */
+    public void update(@NonNull List<Project> projects) {
+        this.projects = index(projects);
+    }
+
+    /**
+     * Retrieves the project with the specified identifier.
+     *
+     * @param id The unique identifier of the project.
+     * @return The Project object with the specified identifier, or null if no project is found.
+     */
+    @Nullable
+    public Project getProject(long id) {
+        return projects.get(id);
+    }
+
+    /**
+     * Returns the current index of the projects by ID.
+     * The returned index must not be modified, it is replaced as a whole on each update.
+     *
+     * @return The current index of the projects by ID.
+     */
+    @NonNull
+    public LongSparseArray<Project> getProjects() {
+        return projects;
+    }
+
+    /**
+     * Builds the index of the given list of projects.
+     *
+     * @param projects The list of projects to index.
+     * @return The projects indexed by ID.
+     */
+    @NonNull
+    private static LongSparseArray<Project> index(@NonNull List<Project> projects) {
+        LongSparseArray<Project> index = new LongSparseArray<>(projects.size());
+        for (Project project : projects) {
+            index.put(project.getId(), project);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,28 @@
+package com.cleanup.todoc.models;
+
+/**
+ * List of all possible sort methods for task.
+ * The selected sort method is used to choose which ordered query is executed on the Task table.
+ */
+public enum SortMethod {
+    /**
+     * Sort alphabetical by name
+     */
+    ALPHABETICAL,
+    /**
+     * Inverted sort alphabetical by name
+     */
+    ALPHABETICAL_INVERTED,
+    /**
+     * Lastly created first
+     */
+    RECENT_FIRST,
+    /**
+     * First created first
+     */
+    OLD_FIRST,
+    /**
+     * No sort
+     */
+    NONE
+}
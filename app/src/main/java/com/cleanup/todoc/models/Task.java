@@ -2,10 +2,13 @@ package com.cleanup.todoc.models;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.text.Collator;
 import java.util.Comparator;
 
 
@@ -15,7 +18,10 @@ import java.util.Comparator;
  */
 @Entity(foreignKeys = @ForeignKey(entity = Project.class,
         parentColumns = "id", // id of the project
-        childColumns = "projectId")) // Attribute projectId of the Task class (Id of the project associated with the task)
+        childColumns = "projectId"), // Attribute projectId of the Task class (Id of the project associated with the task)
+        indices = {@Index("projectId")}) // Index used by the foreign key checks
+// The ordered and per-project queries of TaskDao are served by partial indexes leaving out the deleted tasks,
+// which Room cannot declare: they are created by TodocDatabase when the database is opened
 // The projectId field is part of the task table (source) and points to the id of the project table (destination of the foreign key)
 
 // onDelete = CASCADE : if a project is deleted, all tasks associated with this project will be deleted
@@ -36,8 +42,10 @@ public class Task {
 
     /**
      * Name of the task.
+     * It is compared according to the rules of the user's language, by the database (its index included) as well as by the comparators.
      */
     @NonNull
+    @ColumnInfo(collate = ColumnInfo.LOCALIZED)
     private String name;
 
     /**
@@ -47,9 +55,17 @@ public class Task {
 
     /**
      * Indicates whether the task is selected.
+     * Kept for the stored column only: the selection of the list is held by the ViewModel as a {@link TaskSelection}.
      */
     private Boolean isSelected = false;
 
+    /**
+     * Deletion timestamp of the task, or null if the task is not deleted.
+     * A deleted task is kept as a tombstone, hidden from the lists, until it is purged by the TaskCompactionWorker.
+     */
+    @Nullable
+    private Long deletedAt;
+
     /**
      * Constructor for creating a Task object.
      *
@@ -103,6 +119,11 @@ public class Task {
         return isSelected;
     }
 
+    @Nullable
+    public Long getDeletedAt() {
+        return deletedAt;
+    }
+
 
     // --- SETTERS ---
     public void setId(long id) {
@@ -125,24 +146,34 @@ public class Task {
         isSelected = selected;
     }
 
+    public void setDeletedAt(@Nullable Long deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
 
     /**
-     * Comparator to sort task from A to Z
+     * Comparator to sort task from A to Z, according to the rules of the user's language
+     * (each comparator has its own collator, which cannot be shared between threads; the displayed list is sorted by the database)
      */
     public static class TaskAZComparator implements Comparator<Task> {
+        private final Collator collator = Collator.getInstance();
+
         @Override
         public int compare(Task left, Task right) {
-            return left.name.compareTo(right.name);
+            return collator.compare(left.name, right.name);
         }
     }
 
     /**
-     * Comparator to sort task from Z to A
+     * Comparator to sort task from Z to A, according to the rules of the user's language
+     * (each comparator has its own collator, which cannot be shared between threads; the displayed list is sorted by the database)
      */
     public static class TaskZAComparator implements Comparator<Task> {
+        private final Collator collator = Collator.getInstance();
+
         @Override
         public int compare(Task left, Task right) {
-            return right.name.compareTo(left.name);
+            return collator.compare(right.name, left.name);
         }
     }
 
@@ -152,7 +183,7 @@ public class Task {
     public static class TaskRecentComparator implements Comparator<Task> {
         @Override
         public int compare(Task left, Task right) {
-            return (int) (right.creationTimestamp - left.creationTimestamp);
+            return Long.compare(right.creationTimestamp, left.creationTimestamp); // A cast of the difference to int could overflow
         }
     }
 
@@ -162,7 +193,7 @@ public class Task {
     public static class TaskOldComparator implements Comparator<Task> {
         @Override
         public int compare(Task left, Task right) {
-            return (int) (left.creationTimestamp - right.creationTimestamp);
+            return Long.compare(left.creationTimestamp, right.creationTimestamp);
         }
     }
 }
@@ -0,0 +1,49 @@
+package com.cleanup.todoc.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * Represents the full-text search table "TaskFts" in the application.
+ * This table indexes the names of the tasks. Its content is the Task table itself:
+ * Room keeps the index in sync with triggers, and the rowid of an entry is the ID of the indexed task.
+ * The names are split by the unicode61 tokenizer, which folds the case and the accents of every letter, not only ASCII ones:
+ * "État des lieux" is found by "etat" as well as by "ÉTAT".
+ * The prefixes of 2 and 3 letters of every word are indexed too: the search runs while the user types, and its first words,
+ * the shortest ones, are the prefixes matching the most terms, which are then read from a single entry instead of a range of terms.
+ */
+@Fts4(contentEntity = Task.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61, prefix = {2, 3})
+@Entity
+
+public class TaskFts {
+
+    /**
+     * Name of the indexed task.
+     */
+    @NonNull
+    private String name;
+
+    /**
+     * Constructor for creating a TaskFts object.
+     *
+     * @param name The name of the indexed task.
+     */
+    public TaskFts(@NonNull String name) {
+        this.name = name;
+    }
+
+
+    // --- GETTERS ---
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+
+    // --- SETTERS ---
+    public void setName(@NonNull String name) {
+        this.name = name;
+    }
+}
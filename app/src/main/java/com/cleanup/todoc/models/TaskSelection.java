@@ -0,0 +1,99 @@
+package com.cleanup.todoc.models;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The IDs of the tasks selected by the user, stored as a sorted array of primitive IDs.
+ * Looking up an ID is a binary search and does not allocate, so each bound row can check whether it is selected.
+ * Instances are immutable, each change creates a new instance.
+ */
+public final class TaskSelection {
+
+    /**
+     * No selected task.
+     */
+    public static final TaskSelection EMPTY = new TaskSelection(new long[0]);
+
+    /**
+     * The IDs of the selected tasks, sorted in ascending order.
+     */
+    @NonNull
+    private final long[] taskIds;
+
+    /**
+     * Constructor for creating a TaskSelection object.
+     *
+     * @param taskIds The IDs of the selected tasks, sorted in ascending order.
+     */
+    private TaskSelection(@NonNull long[] taskIds) {
+        this.taskIds = taskIds;
+    }
+
+    /**
+     * Returns whether the task with the specified ID is selected.
+     *
+     * @param taskId The ID of the task.
+     * @return True if the task is selected.
+     */
+    public boolean contains(long taskId) {
+        return Arrays.binarySearch(taskIds, taskId) >= 0;
+    }
+
+    /**
+     * Returns the number of selected tasks.
+     *
+     * @return The number of selected tasks.
+     */
+    public int size() {
+        return taskIds.length;
+    }
+
+    /**
+     * Returns whether no task is selected.
+     *
+     * @return True if no task is selected.
+     */
+    public boolean isEmpty() {
+        return taskIds.length == 0;
+    }
+
+    /**
+     * Returns the selection with the specified task selected if it is not, or unselected if it is.
+     *
+     * @param taskId The ID of the task.
+     * @return The new selection.
+     */
+    @NonNull
+    public TaskSelection toggle(long taskId) {
+        int index = Arrays.binarySearch(taskIds, taskId);
+        long[] newTaskIds = new long[index >= 0 ? taskIds.length - 1 : taskIds.length + 1];
+        if (index >= 0) {
+            System.arraycopy(taskIds, 0, newTaskIds, 0, index);
+            System.arraycopy(taskIds, index + 1, newTaskIds, index, taskIds.length - index - 1);
+        } else {
+            int insertionIndex = -index - 1;
+            System.arraycopy(taskIds, 0, newTaskIds, 0, insertionIndex);
+            newTaskIds[insertionIndex] = taskId;
+            System.arraycopy(taskIds, insertionIndex, newTaskIds, insertionIndex + 1, taskIds.length - insertionIndex);
+        }
+        return newTaskIds.length == 0 ? EMPTY : new TaskSelection(newTaskIds);
+    }
+
+    /**
+     * Returns the IDs of the selected tasks, in ascending order.
+     *
+     * @return The list of the IDs of the selected tasks.
+     */
+    @NonNull
+    public List<Long> toList() {
+        List<Long> list = new ArrayList<>(taskIds.length);
+        for (long taskId : taskIds) {
+            list.add(taskId);
+        }
+        return list;
+    }
+}
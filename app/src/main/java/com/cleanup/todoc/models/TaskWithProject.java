@@ -0,0 +1,113 @@
+package com.cleanup.todoc.models;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+
+/**
+ * Represents a row of the list of tasks, loaded by a single query joining the Task and Project tables.
+ * It only holds the columns displayed by the row, so that the list does not need to look up the project of each task.
+ */
+public class TaskWithProject {
+
+    /**
+     * Unique identifier of the task.
+     */
+    private final long id;
+
+    /**
+     * Name of the task.
+     */
+    @NonNull
+    private final String name;
+
+    /**
+     * Creation timestamp of the task.
+     */
+    private final long creationTimestamp;
+
+    /**
+     * Name of the project associated with the task.
+     */
+    @NonNull
+    private final String projectName;
+
+    /**
+     * Color of the project associated with the task.
+     */
+    @ColorInt
+    private final int projectColor;
+
+    /**
+     * Constructor for creating a TaskWithProject object, used by Room to map the columns of the query.
+     *
+     * @param id                The unique identifier of the task.
+     * @param name              The name of the task.
+     * @param creationTimestamp The creation timestamp of the task.
+     * @param projectName       The name of the project associated with the task.
+     * @param projectColor      The color of the project associated with the task.
+     */
+    public TaskWithProject(long id, @NonNull String name, long creationTimestamp, @NonNull String projectName, @ColorInt int projectColor) {
+        this.id = id;
+        this.name = name;
+        this.creationTimestamp = creationTimestamp;
+        this.projectName = projectName;
+        this.projectColor = projectColor;
+    }
+
+
+    // --- GETTERS ---
+    public long getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    public long getCreationTimestamp() {
+        return creationTimestamp;
+    }
+
+    @NonNull
+    public String getProjectName() {
+        return projectName;
+    }
+
+    @ColorInt
+    public int getProjectColor() {
+        return projectColor;
+    }
+
+    /**
+     * Returns whether this row displays the same content as the given one.
+     *
+     * @param other The row to compare with.
+     * @return true if both rows have the same task name, creation timestamp, project name and project color.
+     */
+    public boolean hasSameContent(@NonNull TaskWithProject other) {
+        return creationTimestamp == other.creationTimestamp
+                && hasSameName(other)
+                && hasSameProject(other);
+    }
+
+    /**
+     * Returns whether this row displays the same task name as the given one.
+     *
+     * @param other The row to compare with.
+     * @return true if both rows have the same task name.
+     */
+    public boolean hasSameName(@NonNull TaskWithProject other) {
+        return name.equals(other.name);
+    }
+
+    /**
+     * Returns whether this row displays the same project as the given one.
+     *
+     * @param other The row to compare with.
+     * @return true if both rows have the same project name and project color.
+     */
+    public boolean hasSameProject(@NonNull TaskWithProject other) {
+        return projectColor == other.projectColor && projectName.equals(other.projectName);
+    }
+}
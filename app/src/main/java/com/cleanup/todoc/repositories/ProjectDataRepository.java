@@ -1,5 +1,6 @@
 package com.cleanup.todoc.repositories;
 
+import androidx.annotation.WorkerThread;
 import androidx.lifecycle.LiveData;
 
 import com.cleanup.todoc.database.ProjectDao;
@@ -45,4 +46,12 @@ public class ProjectDataRepository {
      * @return A LiveData object containing a list of all projects.
      */
     public LiveData<List<Project>> getAllProjects () { return this.projectDao.getAllProjects(); }
+
+    /**
+     * Retrieves all projects synchronously.
+     *
+     * @return The list of all projects.
+     */
+    @WorkerThread
+    public List<Project> getProjectList () { return this.projectDao.getProjectList(); }
 }
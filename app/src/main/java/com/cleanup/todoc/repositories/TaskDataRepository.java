@@ -1,11 +1,24 @@
 package com.cleanup.todoc.repositories;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
 
 import com.cleanup.todoc.database.TaskDao;
+import com.cleanup.todoc.models.SortMethod;
 import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskWithProject;
 
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 
 /**
  * Repository class for managing Task data.
@@ -13,21 +26,47 @@ import java.util.List;
  *
  * It contains methods for retrieving task data from the DAO (TaskDao).
  * Data is encapsulated in LiveData objects to enable reactive updates and observe changes from ViewModels.
+ *
+ * No task is cached here: the screens read paged rows joined with their project, ordered and filtered by the database,
+ * which a cache of tasks by ID or by project could not serve. The loaded pages are the only copy held in memory,
+ * loaded again by Room when the Task table changes.
  */
 public class TaskDataRepository {
 
+    /**
+     * Number of rows loaded by each page of the paged lists of tasks.
+     */
+    private static final int PAGE_SIZE = 50;
+
+    /**
+     * Configuration of the paged lists of tasks, whose rows are joined with their project by the database.
+     * Placeholders are disabled so that only the loaded pages are held in memory and handed to the adapter.
+     */
+    private static final PagedList.Config PAGED_LIST_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(PAGE_SIZE)
+            .setPrefetchDistance(PAGE_SIZE)
+            .setEnablePlaceholders(false)
+            .build();
+
     /**
      * DAO used to access task data.
      */
     private final TaskDao taskDao;
 
+    /**
+     * Executor used to load the pages of tasks from the database.
+     */
+    private final Executor queryExecutor;
+
     /**
      * Constructor for the TaskDataRepository class.
      *
-     * @param taskDao The DAO used to access task data.
+     * @param taskDao       The DAO used to access task data.
+     * @param queryExecutor The executor used to load the pages of tasks from the database.
      */
-    public TaskDataRepository(TaskDao taskDao) {
+    public TaskDataRepository(TaskDao taskDao, Executor queryExecutor) {
         this.taskDao = taskDao;
+        this.queryExecutor = queryExecutor;
     }
 
     /**
@@ -46,13 +85,233 @@ public class TaskDataRepository {
      */
     public LiveData<List<Task>> getAllTasks() { return this.taskDao.getAllTasks(); }
 
+    /**
+     * Reads the first page of the list of tasks displayed when the app starts, to warm the database before it is observed:
+     * the pages of the Task table and of its indexes read by the query are then in the page cache of SQLite.
+     */
+    @WorkerThread
+    public void warmUp() {
+        taskDao.getFirstTasksById(PAGE_SIZE);
+    }
+
+    /**
+     * Retrieves all tasks as a paged list, ordered by the database according to the given sort method.
+     * Only the pages around the visible window are loaded, so memory and time per emission do not depend on the table size.
+     *
+     * @param sortMethod The sort method to apply to the tasks.
+     * @return A LiveData object containing a paged list of all tasks in the requested order.
+     */
+    public LiveData<PagedList<TaskWithProject>> getPagedTasks(SortMethod sortMethod) {
+        return buildPagedList(getTasksDataSource(sortMethod));
+    }
+
+    /**
+     * Retrieves the tasks of the specified project as a paged list, ordered by the database according to the given sort method.
+     * The tasks are read from the range of the project in the indexes on the projectId column, so other projects are never scanned.
+     *
+     * @param projectId  The ID of the project to retrieve tasks for.
+     * @param sortMethod The sort method to apply to the tasks.
+     * @return A LiveData object containing a paged list of the tasks of the project in the requested order.
+     */
+    public LiveData<PagedList<TaskWithProject>> getPagedProjectTasks(long projectId, SortMethod sortMethod) {
+        return buildPagedList(getProjectTasksDataSource(projectId, sortMethod));
+    }
+
+    /**
+     * Searches the tasks whose name contains words starting with the words of the given text, as a paged list ranked by relevance.
+     * The search is served by the full-text index of the task names.
+     *
+     * @param text The text typed by the user.
+     * @return A LiveData object containing a paged list of the matching tasks, or null if the text does not contain any word to search.
+     */
+    @Nullable
+    public LiveData<PagedList<TaskWithProject>> searchTasks(@NonNull String text) {
+        String matchQuery = toMatchQuery(text);
+        if (matchQuery == null) {
+            return null;
+        }
+        return buildPagedList(this.taskDao.searchTasks(matchQuery, toNamePrefix(text)));
+    }
+
+    /**
+     * Searches the tasks of the specified project whose name contains words starting with the words of the given text,
+     * as a paged list ranked by relevance.
+     *
+     * @param projectId The ID of the project to search tasks in.
+     * @param text      The text typed by the user.
+     * @return A LiveData object containing a paged list of the matching tasks, or null if the text does not contain any word to search.
+     */
+    @Nullable
+    public LiveData<PagedList<TaskWithProject>> searchProjectTasks(long projectId, @NonNull String text) {
+        String matchQuery = toMatchQuery(text);
+        if (matchQuery == null) {
+            return null;
+        }
+        return buildPagedList(this.taskDao.searchProjectTasks(matchQuery, toNamePrefix(text), projectId));
+    }
+
+    /**
+     * Builds the paged list of the rows provided by the given data source, loaded on the query executor.
+     *
+     * @param dataSourceFactory The paged data source of the rows.
+     * @return A LiveData object containing the paged list of the rows.
+     */
+    private LiveData<PagedList<TaskWithProject>> buildPagedList(DataSource.Factory<Integer, TaskWithProject> dataSourceFactory) {
+        return new LivePagedListBuilder<>(dataSourceFactory, PAGED_LIST_CONFIG)
+                .setFetchExecutor(queryExecutor)
+                .build();
+    }
+
+    /**
+     * Converts a text typed by the user into a prefix compared with LIKE, the LIKE wildcards being escaped by a backslash.
+     *
+     * @param text The text typed by the user.
+     * @return The prefix of the names ranked first.
+     */
+    @NonNull
+    private static String toNamePrefix(@NonNull String text) {
+        return text.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Converts a text typed by the user into a full-text query matching all its words as prefixes.
+     * The characters having a meaning in the full-text query syntax are dropped, and the words are lower-cased
+     * so that they cannot be read as operators (OR, NEAR...).
+     *
+     * @param text The text typed by the user.
+     * @return The full-text query, for example "bur* dir*", or null if the text does not contain any word.
+     */
+    @Nullable
+    private static String toMatchQuery(@NonNull String text) {
+        StringBuilder matchQuery = new StringBuilder();
+        for (String word : getSearchWords(text)) {
+            if (matchQuery.length() > 0) {
+                matchQuery.append(' ');
+            }
+            matchQuery.append(word).append('*');
+        }
+        return matchQuery.length() > 0 ? matchQuery.toString() : null;
+    }
+
+    /**
+     * Returns whether the given task name matches a text typed by the user, with the rule of the full-text index:
+     * each word of the text must be the prefix of a word of the name, regardless of case and accents.
+     * It is used for the tasks which are not stored yet, and therefore not indexed.
+     *
+     * @param name The name of the task.
+     * @param text The text typed by the user.
+     * @return True if each word of the text is the prefix of a word of the name, or if the text does not contain any word.
+     */
+    public static boolean matchesSearchText(@NonNull String name, @NonNull String text) {
+        List<String> nameWords = getSearchWords(foldAccents(name));
+        for (String word : getSearchWords(foldAccents(text))) {
+            boolean found = false;
+            for (String nameWord : nameWords) {
+                if (nameWord.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a text into its lower-cased words, the way the unicode61 tokenizer of the full-text index does:
+     * letters and digits form the words, any other character separates them.
+     *
+     * @param text The text to split.
+     * @return The words of the text, in order.
+     */
+    @NonNull
+    private static List<String> getSearchWords(@NonNull String text) {
+        List<String> words = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Removes the accents of a text, the way the unicode61 tokenizer of the full-text index does ("tâche" becomes "tache").
+     *
+     * @param text The text.
+     * @return The text without its accents.
+     */
+    @NonNull
+    private static String foldAccents(@NonNull String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+    }
+
+    /**
+     * Returns the paged data source matching the given sort method.
+     *
+     * @param sortMethod The sort method to apply to the tasks.
+     * @return The DataSource.Factory providing the tasks in the requested order.
+     */
+    private DataSource.Factory<Integer, TaskWithProject> getTasksDataSource(SortMethod sortMethod) {
+        switch (sortMethod) {
+            case ALPHABETICAL:
+                return this.taskDao.getAllTasksByNameAsc();
+            case ALPHABETICAL_INVERTED:
+                return this.taskDao.getAllTasksByNameDesc();
+            case RECENT_FIRST:
+                return this.taskDao.getAllTasksByCreationTimestampDesc();
+            case OLD_FIRST:
+                return this.taskDao.getAllTasksByCreationTimestampAsc();
+            default:
+                return this.taskDao.getAllTasksById();
+        }
+    }
+
+    /**
+     * Returns the paged data source of the tasks of a project matching the given sort method.
+     *
+     * @param projectId  The ID of the project to retrieve tasks for.
+     * @param sortMethod The sort method to apply to the tasks.
+     * @return The DataSource.Factory providing the tasks of the project in the requested order.
+     */
+    private DataSource.Factory<Integer, TaskWithProject> getProjectTasksDataSource(long projectId, SortMethod sortMethod) {
+        switch (sortMethod) {
+            case ALPHABETICAL:
+                return this.taskDao.getProjectTasksByNameAsc(projectId);
+            case ALPHABETICAL_INVERTED:
+                return this.taskDao.getProjectTasksByNameDesc(projectId);
+            case RECENT_FIRST:
+                return this.taskDao.getProjectTasksByCreationTimestampDesc(projectId);
+            case OLD_FIRST:
+                return this.taskDao.getProjectTasksByCreationTimestampAsc(projectId);
+            default:
+                return this.taskDao.getProjectTasksById(projectId);
+        }
+    }
+
     /**
      * Inserts a new task into the database.
      *
      * @param task The task to be inserted.
      */
     // --- CREATE ---
-    public void createTask(Task task) { taskDao.insertTask(task); }
+    public void createTask(Task task) {
+        task.setId(taskDao.insertTask(task)); // The task gets the ID generated by the database
+    }
+
+    /**
+     * Inserts a list of new tasks into the database, within a single transaction.
+     *
+     * @param tasks The tasks to be inserted.
+     */
+    public void createTasks(List<Task> tasks) {
+        long[] taskIds = taskDao.insertTasks(tasks);
+        for (int i = 0; i < taskIds.length; i++) {
+            tasks.get(i).setId(taskIds[i]);
+        }
+    }
 
     /**
      * Deletes a task from the database.
@@ -60,7 +319,39 @@ public class TaskDataRepository {
      * @param taskId The ID of the task to delete.
      */
     // --- DELETE ---
-    public void deleteTask(long taskId) { taskDao.deleteTask(taskId); }
+    public void deleteTask(long taskId) {
+        taskDao.deleteTask(taskId);
+    }
+
+    /**
+     * Deletes the tasks with the specified IDs from the database, within a single transaction.
+     *
+     * @param taskIds The IDs of the tasks to delete.
+     */
+    public void deleteTasks(Collection<Long> taskIds) {
+        taskDao.deleteTasksById(taskIds);
+    }
+
+    /**
+     * Restores the deleted tasks with the specified IDs, within a single transaction, as long as they have not been purged.
+     *
+     * @param taskIds The IDs of the tasks to restore.
+     */
+    // --- RESTORE ---
+    public void restoreTasks(Collection<Long> taskIds) {
+        taskDao.restoreTasksById(taskIds);
+    }
+
+    /**
+     * Moves the tasks with the specified IDs to the specified project, within a single transaction.
+     *
+     * @param taskIds   The IDs of the tasks to move.
+     * @param projectId The ID of the project the tasks are moved to.
+     */
+    // --- MOVE ---
+    public void moveTasks(Collection<Long> taskIds, long projectId) {
+        taskDao.moveTasksById(taskIds, projectId);
+    }
 
     /**
      * Updates a task in the database.
@@ -68,5 +359,31 @@ public class TaskDataRepository {
      * @param task The task to update.
      */
     // --- UPDATE ---
-    public void updateTask(Task task) { taskDao.updateTask(task); }
+    public void updateTask(Task task) {
+        taskDao.updateTask(task);
+    }
+
+    /**
+     * Updates a list of tasks in the database, within a single transaction.
+     *
+     * @param tasks The tasks to update.
+     */
+    public void updateTasks(List<Task> tasks) {
+        taskDao.updateTasks(tasks);
+    }
+
+    /**
+     * Applies a batch of writes within a single transaction: the tasks are inserted, then updated, then deleted.
+     *
+     * @param createdTasks   The tasks to be inserted, which get the IDs generated by the database.
+     * @param updatedTasks   The tasks to update.
+     * @param deletedTaskIds The IDs of the tasks to delete.
+     */
+    // --- BATCH ---
+    public void applyWrites(List<Task> createdTasks, List<Task> updatedTasks, Collection<Long> deletedTaskIds) {
+        long[] taskIds = taskDao.applyWrites(createdTasks, updatedTasks, deletedTaskIds);
+        for (int i = 0; i < taskIds.length; i++) {
+            createdTasks.get(i).setId(taskIds[i]);
+        }
+    }
 }
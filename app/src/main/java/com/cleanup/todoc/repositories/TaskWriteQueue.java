@@ -0,0 +1,390 @@
+package com.cleanup.todoc.repositories;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.cleanup.todoc.models.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue grouping the writes of the tasks made in a short window into a single transaction.
+ *
+ * The writes are collected until the window after the first one has elapsed, or until the queue is full,
+ * then applied at once on the transaction executor: a burst of edits is committed once, and the list of tasks
+ * observing the Task table is reloaded once. Redundant writes of the same task are merged while they are pending:
+ * only the last update of a task is kept, and a deletion replaces the pending update of the task.
+ *
+ * Writes to different tasks are independent, so they are applied grouped by kind: inserts, then updates, then deletions.
+ * When the transaction of a group fails, its writes are applied again one by one, each in its own transaction,
+ * so that a single failing write (a task of a deleted project for instance) does not take the unrelated writes of its window with it.
+ * The listeners are told on the transaction executor which writes have been committed and which have failed.
+ */
+public class TaskWriteQueue {
+
+    /**
+     * Tag of the logs of the queue.
+     */
+    private static final String TAG = "TaskWriteQueue";
+
+    /**
+     * Repository the writes are applied to.
+     */
+    @NonNull
+    private final TaskDataRepository taskDataSource;
+
+    /**
+     * Executor running the transactions of the database, on which the writes are applied.
+     */
+    @NonNull
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Duration of the window in which writes are grouped, in milliseconds.
+     */
+    private final long windowMillis;
+
+    /**
+     * Number of pending writes above which the queue is applied without waiting for the end of the window.
+     */
+    private final int maxPendingWrites;
+
+    /**
+     * Pending task creations, in the order of the calls. A created task has no ID until it is inserted.
+     */
+    @NonNull
+    private List<Task> pendingCreations = new ArrayList<>();
+
+    /**
+     * Pending updates and deletions, indexed by task ID: a task maps to its last update, or to null when it is deleted.
+     */
+    @NonNull
+    private Map<Long, Task> pendingChanges = new LinkedHashMap<>();
+
+    /**
+     * Whether the application of the pending writes has been scheduled.
+     */
+    private boolean flushScheduled;
+
+    /**
+     * Listeners told of the outcome of each group of writes.
+     */
+    @NonNull
+    private final List<WriteListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor for creating a TaskWriteQueue object.
+     *
+     * @param taskDataSource   The repository the writes are applied to.
+     * @param executor         The executor running the transactions of the database.
+     * @param windowMillis     The duration of the window in which writes are grouped, in milliseconds.
+     * @param maxPendingWrites The number of pending writes above which the queue is applied without waiting.
+     */
+    public TaskWriteQueue(@NonNull TaskDataRepository taskDataSource, @NonNull ScheduledExecutorService executor,
+                          long windowMillis, int maxPendingWrites) {
+        this.taskDataSource = taskDataSource;
+        this.executor = executor;
+        this.windowMillis = windowMillis;
+        this.maxPendingWrites = maxPendingWrites;
+    }
+
+    /**
+     * Queues the creation of a task. The task gets its ID when the queue is applied.
+     *
+     * @param task The task to be created.
+     */
+    // --- CREATE ---
+    public synchronized void createTask(@NonNull Task task) {
+        pendingCreations.add(task);
+        onWriteQueued();
+    }
+
+    /**
+     * Queues the creation of a list of tasks. The tasks get their IDs when the queue is applied.
+     *
+     * @param tasks The tasks to be created.
+     */
+    public synchronized void createTasks(@NonNull List<Task> tasks) {
+        pendingCreations.addAll(tasks);
+        onWriteQueued();
+    }
+
+    /**
+     * Cancels the creation of a task, if it has not been applied yet.
+     *
+     * @param task The task whose creation is cancelled.
+     * @return True if the creation has been cancelled, false if it is being applied or has already been applied.
+     */
+    public synchronized boolean cancelCreation(@NonNull Task task) {
+        return pendingCreations.remove(task); // Tasks are compared by identity
+    }
+
+    /**
+     * Queues the update of a task, replacing its pending update if any.
+     *
+     * @param task The task to update.
+     */
+    // --- UPDATE ---
+    public synchronized void updateTask(@NonNull Task task) {
+        queueUpdate(task);
+        onWriteQueued();
+    }
+
+    /**
+     * Queues the update of a list of tasks, replacing their pending updates if any.
+     *
+     * @param tasks The tasks to update.
+     */
+    public synchronized void updateTasks(@NonNull List<Task> tasks) {
+        for (Task task : tasks) {
+            queueUpdate(task);
+        }
+        onWriteQueued();
+    }
+
+    /**
+     * Queues the deletion of a task, replacing its pending update if any.
+     *
+     * @param taskId The ID of the task to delete.
+     */
+    // --- DELETE ---
+    public synchronized void deleteTask(long taskId) {
+        pendingChanges.put(taskId, null);
+        onWriteQueued();
+    }
+
+    /**
+     * Queues the deletion of a list of tasks, replacing their pending updates if any.
+     *
+     * @param taskIds The IDs of the tasks to delete.
+     */
+    public synchronized void deleteTasks(@NonNull Collection<Long> taskIds) {
+        for (Long taskId : taskIds) {
+            pendingChanges.put(taskId, null);
+        }
+        onWriteQueued();
+    }
+
+    /**
+     * Restores a list of deleted tasks, within a single transaction.
+     * The deletions which have not been applied yet are cancelled instead, so that these tasks are not written at all.
+     *
+     * @param taskIds The IDs of the tasks to restore.
+     */
+    // --- RESTORE ---
+    public void restoreTasks(@NonNull Collection<Long> taskIds) {
+        final List<Long> restoredTaskIds = new ArrayList<>();
+        synchronized (this) {
+            for (Long taskId : taskIds) {
+                if (pendingChanges.containsKey(taskId) && pendingChanges.get(taskId) == null) {
+                    pendingChanges.remove(taskId);
+                } else {
+                    restoredTaskIds.add(taskId);
+                }
+            }
+        }
+        if (restoredTaskIds.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            flush(); // The deletions being grouped are applied first
+            try {
+                taskDataSource.restoreTasks(restoredTaskIds);
+            } catch (RuntimeException e) { // The transaction has been rolled back, the tasks stay deleted
+                Log.e(TAG, "Failed to restore " + restoredTaskIds.size() + " tasks", e);
+            }
+        });
+    }
+
+    /**
+     * Moves a list of tasks to another project, within a single transaction.
+     * The pending writes are applied first, so that a pending update of a moved task does not move it back.
+     *
+     * @param taskIds   The IDs of the tasks to move.
+     * @param projectId The ID of the project the tasks are moved to.
+     */
+    // --- MOVE ---
+    public void moveTasks(@NonNull Collection<Long> taskIds, long projectId) {
+        final List<Long> movedTaskIds = new ArrayList<>(taskIds);
+        executor.execute(() -> {
+            flush();
+            try {
+                taskDataSource.moveTasks(movedTaskIds, projectId);
+            } catch (RuntimeException e) { // The transaction has been rolled back, the list still shows the tasks in their project
+                Log.e(TAG, "Failed to move " + movedTaskIds.size() + " tasks to project " + projectId, e);
+            }
+        });
+    }
+
+    /**
+     * Adds a listener told of the outcome of each group of writes applied from now on.
+     *
+     * @param listener The listener to add.
+     */
+    public void addListener(@NonNull WriteListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added by {@link #addListener(WriteListener)}.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeListener(@NonNull WriteListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues the update of a task, replacing its pending update if any.
+     * The update of a task which is pending deletion is dropped, since it would not change any row once the task is deleted.
+     *
+     * @param task The task to update.
+     */
+    private void queueUpdate(@NonNull Task task) {
+        Long taskId = task.getId();
+        if (pendingChanges.containsKey(taskId) && pendingChanges.get(taskId) == null) {
+            return;
+        }
+        pendingChanges.put(taskId, task);
+    }
+
+    /**
+     * Schedules the application of the pending writes at the end of the window, or right away if the queue is full.
+     */
+    private void onWriteQueued() {
+        if (pendingCreations.size() + pendingChanges.size() >= maxPendingWrites) {
+            flushScheduled = true;
+            executor.execute(this::flush);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Applies the pending writes within a single transaction, then tells the listeners whether it has been committed.
+     * If the transaction fails, the writes are applied one by one so that only the failing ones are lost.
+     * Called on the transaction executor; does nothing if the writes have already been applied by an earlier call.
+     */
+    @WorkerThread
+    void flush() {
+        List<Task> creations;
+        Map<Long, Task> changes;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingCreations.isEmpty() && pendingChanges.isEmpty()) {
+                return;
+            }
+            creations = pendingCreations;
+            changes = pendingChanges;
+            pendingCreations = new ArrayList<>();
+            pendingChanges = new LinkedHashMap<>();
+        }
+
+        List<Task> updates = new ArrayList<>();
+        List<Long> deletions = new ArrayList<>();
+        for (Map.Entry<Long, Task> change : changes.entrySet()) {
+            if (change.getValue() != null) {
+                updates.add(change.getValue());
+            } else {
+                deletions.add(change.getKey());
+            }
+        }
+        try {
+            taskDataSource.applyWrites(creations, updates, deletions);
+        } catch (RuntimeException e) { // The transaction has been rolled back, none of the writes has been applied
+            Log.w(TAG, "Failed to apply " + (creations.size() + changes.size()) + " grouped writes, applying them one by one", e);
+            applyOneByOne(creations, updates, deletions);
+            return;
+        }
+        for (WriteListener listener : listeners) {
+            listener.onWritesApplied(creations, deletions);
+        }
+    }
+
+    /**
+     * Applies the writes of a group whose transaction failed one by one, each in its own transaction,
+     * then tells the listeners which creations and deletions have been committed and which have failed.
+     * A failed update is only logged, the list keeps showing the task as it is stored.
+     *
+     * @param creations The tasks to be created.
+     * @param updates   The tasks to update.
+     * @param deletions The IDs of the tasks to delete.
+     */
+    private void applyOneByOne(@NonNull List<Task> creations, @NonNull List<Task> updates, @NonNull List<Long> deletions) {
+        List<Task> createdTasks = new ArrayList<>();
+        List<Task> failedCreations = new ArrayList<>();
+        List<Long> deletedTaskIds = new ArrayList<>();
+        List<Long> failedDeletions = new ArrayList<>();
+        RuntimeException error = null;
+
+        for (Task task : creations) {
+            try {
+                taskDataSource.createTask(task);
+                createdTasks.add(task);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to create task \"" + task.getName() + "\"", e);
+                failedCreations.add(task);
+                error = e;
+            }
+        }
+        for (Task task : updates) {
+            try {
+                taskDataSource.updateTask(task);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to update task " + task.getId(), e);
+            }
+        }
+        for (Long taskId : deletions) {
+            try {
+                taskDataSource.deleteTask(taskId);
+                deletedTaskIds.add(taskId);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to delete task " + taskId, e);
+                failedDeletions.add(taskId);
+                error = e;
+            }
+        }
+
+        for (WriteListener listener : listeners) {
+            if (!createdTasks.isEmpty() || !deletedTaskIds.isEmpty()) {
+                listener.onWritesApplied(createdTasks, deletedTaskIds);
+            }
+            if (error != null) {
+                listener.onWritesFailed(failedCreations, failedDeletions, error);
+            }
+        }
+    }
+
+    /**
+     * Listener told of the outcome of each group of writes, on the transaction executor.
+     * A group whose transaction failed is reported by two calls: its writes which have been committed one by one, then the failed ones.
+     */
+    public interface WriteListener {
+        /**
+         * Called when a group of writes, or the part of it which could be applied one by one, has been committed.
+         *
+         * @param createdTasks   The created tasks, which now have their IDs.
+         * @param deletedTaskIds The IDs of the deleted tasks.
+         */
+        void onWritesApplied(@NonNull List<Task> createdTasks, @NonNull List<Long> deletedTaskIds);
+
+        /**
+         * Called when writes of a group have failed, even when applied one by one.
+         *
+         * @param createdTasks   The tasks which have not been created.
+         * @param deletedTaskIds The IDs of the tasks which have not been deleted.
+         * @param error          The error which made the last of these writes fail.
+         */
+        void onWritesFailed(@NonNull List<Task> createdTasks, @NonNull List<Long> deletedTaskIds, @NonNull RuntimeException error);
+    }
+}
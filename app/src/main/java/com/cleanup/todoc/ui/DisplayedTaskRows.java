@@ -0,0 +1,82 @@
+package com.cleanup.todoc.ui;
+
+import androidx.annotation.NonNull;
+
+import com.cleanup.todoc.models.TaskWithProject;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rows of the list of tasks displayed to the user: the loaded rows of the paged list, without the rows of the deleted tasks,
+ * and the rows of the created tasks placed among them in the order of the list.
+ * Each row keeps the position of the loaded row it shows, so that binding it loads the pages around that position.
+ * Instances are immutable, so they can be compared on a background thread.
+ */
+final class DisplayedTaskRows {
+
+    /**
+     * No displayed row.
+     */
+    static final DisplayedTaskRows EMPTY = new DisplayedTaskRows(Collections.emptyList(), new int[0]);
+
+    /**
+     * The displayed rows, in the order of the list.
+     */
+    @NonNull
+    private final List<TaskWithProject> rows;
+
+    /**
+     * For each displayed row, its position in the loaded rows, or -1 for the row of a created task.
+     */
+    @NonNull
+    private final int[] loadedPositions;
+
+    /**
+     * Constructor for creating a DisplayedTaskRows object.
+     *
+     * @param rows            The displayed rows, in the order of the list.
+     * @param loadedPositions For each displayed row, its position in the loaded rows, or -1 for the row of a created task.
+     */
+    DisplayedTaskRows(@NonNull List<TaskWithProject> rows, @NonNull int[] loadedPositions) {
+        this.rows = Collections.unmodifiableList(rows);
+        this.loadedPositions = loadedPositions;
+    }
+
+
+    // --- GETTERS ---
+    @NonNull
+    List<TaskWithProject> getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of displayed rows.
+     *
+     * @return The number of displayed rows.
+     */
+    int size() {
+        return rows.size();
+    }
+
+    /**
+     * Returns the row displayed at the given position.
+     *
+     * @param position The position of the row.
+     * @return The row.
+     */
+    @NonNull
+    TaskWithProject get(int position) {
+        return rows.get(position);
+    }
+
+    /**
+     * Returns the position in the loaded rows of the row displayed at the given position.
+     *
+     * @param position The position of the row.
+     * @return The position of the row in the loaded rows, or -1 for the row of a created task.
+     */
+    int getLoadedPosition(int position) {
+        return loadedPositions[position];
+    }
+}
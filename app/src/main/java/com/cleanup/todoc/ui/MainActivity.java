@@ -4,6 +4,7 @@ import android.content.DialogInterface;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.SubMenu;
 import android.view.View;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
@@ -15,15 +16,27 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
+import androidx.appcompat.widget.SearchView;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.paging.PagedList;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.cleanup.todoc.R;
+import com.cleanup.todoc.TodocApplication;
+import com.cleanup.todoc.database.QueryMetrics;
+import com.cleanup.todoc.database.TodocDatabase;
 import com.cleanup.todoc.injection.ViewModelFactory;
 import com.cleanup.todoc.models.Project;
+import com.cleanup.todoc.models.SortMethod;
 import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskSelection;
+import com.cleanup.todoc.models.TaskWithProject;
+import com.google.android.material.snackbar.Snackbar;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -34,24 +47,65 @@ import java.util.List;
  *
  * @author Gaëtan HERFRAY
  */
-public class MainActivity extends AppCompatActivity implements TasksAdapter.DeleteTaskListener {
+public class MainActivity extends AppCompatActivity implements TasksAdapter.DeleteTaskListener, TasksAdapter.SelectTaskListener {
 
     /**
      * The ViewModel which handles the business logic of the application
      * and the communication of the data between the database and the UI.
+     * Null until the database has been opened and warmed by the application.
      */
+    @Nullable
     private TaskViewModel taskViewModel;
 
     /**
      * The adapter which handles the list of tasks
      */
-    private final TasksAdapter adapter = new TasksAdapter(this);;
+    private final TasksAdapter adapter = new TasksAdapter(this, this);
 
     /**
-     * The sort method to be used to display tasks
+     * The action mode displayed while tasks are selected, offering the bulk actions on the selection
      */
-    @NonNull
-    private SortMethod sortMethod = SortMethod.NONE;
+    @Nullable
+    private ActionMode selectionActionMode = null;
+
+    /**
+     * Callback of the selection action mode, which clears the selection when the user leaves it
+     */
+    private final ActionMode.Callback selectionActionModeCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.selection_actions, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (taskViewModel == null) {
+                return false;
+            }
+            if (item.getItemId() == R.id.action_delete_selection) {
+                showUndoDeletion(taskViewModel.deleteSelectedTasks()); // One statement marking all the selected tasks as deleted
+                return true;
+            } else if (item.getItemId() == R.id.action_move_selection) {
+                showMoveTasksDialog();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionActionMode = null;
+            if (taskViewModel != null) {
+                taskViewModel.clearSelection();
+            }
+        }
+    };
 
     /**
      * Dialog to create a new task
@@ -90,74 +144,245 @@ public class MainActivity extends AppCompatActivity implements TasksAdapter.Dele
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        // Getting ViewModelFactory instance
-        ViewModelFactory factory = ViewModelFactory.getInstance(this);
-
-        // Using the ViewModelFactory instance to get the TaskViewModel instance
-        taskViewModel = new ViewModelProvider(this, factory).get(TaskViewModel.class);
-        this.taskViewModel.init();
-
         setContentView(R.layout.activity_main);
 
         listTasks = findViewById(R.id.list_tasks);
         lblNoTasks = findViewById(R.id.lbl_no_task);
 
+        listTasks.setHasFixedSize(true); // The list fills the screen, its size does not depend on its rows
         listTasks.setLayoutManager(new LinearLayoutManager(this, LinearLayoutManager.VERTICAL, false));
 
         listTasks.setAdapter(adapter); // Set the adapter to the RecyclerView
 
-        findViewById(R.id.fab_add_task).setOnClickListener(new View.OnClickListener() {
+        View fabAddTask = findViewById(R.id.fab_add_task);
+        fabAddTask.setEnabled(false); // Tasks can be added once the ViewModel is created
+        fabAddTask.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
                 showAddTaskDialog();
             }
         });
 
+        // The application opens and warms the database in the background, the views are inflated meanwhile
+        TodocApplication application = (TodocApplication) getApplication();
+        application.getViewModelFactory().observe(this, this::onViewModelFactoryReady);
+        application.getInitializationError().observe(this, this::onInitializationFailed);
+    }
+
+    /**
+     * Tells the user that the database could not be opened, offering to retry.
+     *
+     * @param error the failure of the initialization, or null if there is none
+     */
+    private void onInitializationFailed(@Nullable RuntimeException error) {
+        if (error == null) {
+            return;
+        }
+        Snackbar.make(listTasks, R.string.database_error, Snackbar.LENGTH_INDEFINITE)
+                .setAction(R.string.retry, view -> ((TodocApplication) getApplication()).initialize())
+                .show();
+    }
+
+    /**
+     * Creates the ViewModel and starts observing it, once the application has opened and warmed the database.
+     *
+     * @param factory the ViewModelFactory built by the application
+     */
+    private void onViewModelFactoryReady(@NonNull ViewModelFactory factory) {
+        if (taskViewModel != null) {
+            return;
+        }
+
+        // Using the ViewModelFactory instance to get the TaskViewModel instance
+        taskViewModel = new ViewModelProvider(this, factory).get(TaskViewModel.class);
+        this.taskViewModel.init();
+
         observeProjects(); // Observe the projects
 
         observeTasks(); // Observe the tasks
+
+        taskViewModel.getSelection().observe(this, this::updateSelection); // Observe the selected tasks
+
+        findViewById(R.id.fab_add_task).setEnabled(true);
+        invalidateOptionsMenu(); // The actions are shown once the ViewModel can handle them
     }
 
+    /**
+     * Observes the list of tasks to display, once for the lifetime of the activity:
+     * the ViewModel switches the underlying query itself when the sort method, the project filter or the search text change.
+     */
     private void observeTasks() {
-        taskViewModel.getAllTasks().observe(this, this::updateTasks);
+        taskViewModel.getSortedTasks().observe(this, this::updateTasks);
+        taskViewModel.getPendingChanges().observe(this, this::updatePendingChanges); // Added and deleted tasks are shown before their write completes
     }
 
+    /**
+     * Observes the projects, once for the lifetime of the activity, to fill the project spinner and the project filter menu.
+     */
     private void observeProjects() {
         taskViewModel.getAllProjects().observe(this, projects -> {
-            adapter.updateProjects(projects);
             populateDialogSpinner();
+            invalidateOptionsMenu(); // The project filter menu lists the projects
         });
+        taskViewModel.getProjectFilter().observe(this, projectId -> invalidateOptionsMenu()); // Checks the selected project in the filter menu
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
+        if (taskViewModel == null) {
+            return false;
+        }
         getMenuInflater().inflate(R.menu.actions, menu);
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                taskViewModel.setSearchText(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                taskViewModel.setSearchText(newText); // The ViewModel waits for the user to stop typing before searching
+                return true;
+            }
+        });
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        if (taskViewModel == null) {
+            return false;
+        }
+        SubMenu projectMenu = menu.findItem(R.id.action_filter_project).getSubMenu();
+        projectMenu.removeGroup(R.id.group_project_filter);
+
+        Long selectedProjectId = taskViewModel.getProjectFilter().getValue();
+        MenuItem selectedItem = projectMenu.add(R.id.group_project_filter, R.id.filter_all_projects, Menu.NONE, R.string.filter_all_projects);
+
+        // One item per project, the ViewModel switches to the query reading only the tasks of the selected project
+        List<Project> projects = taskViewModel.getAllProjects().getValue();
+        if (projects != null) {
+            for (Project project : projects) {
+                MenuItem projectItem = projectMenu.add(R.id.group_project_filter, Menu.NONE, Menu.NONE, project.getName());
+                if (selectedProjectId != null && selectedProjectId == project.getId()) {
+                    selectedItem = projectItem;
+                }
+                projectItem.setOnMenuItemClickListener(menuItem -> {
+                    taskViewModel.setProjectFilter(project.getId());
+                    return true;
+                });
+            }
+        }
+        projectMenu.setGroupCheckable(R.id.group_project_filter, true, true);
+        selectedItem.setChecked(true);
+
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
+        if (taskViewModel == null) {
+            return super.onOptionsItemSelected(item);
+        }
 
+        // The ViewModel switches to the matching ordered query, the observer set in onCreate receives the sorted list
         if (id == R.id.filter_alphabetical) {
-            sortMethod = SortMethod.ALPHABETICAL;
+            taskViewModel.setSortMethod(SortMethod.ALPHABETICAL);
         } else if (id == R.id.filter_alphabetical_inverted) {
-            sortMethod = SortMethod.ALPHABETICAL_INVERTED;
+            taskViewModel.setSortMethod(SortMethod.ALPHABETICAL_INVERTED);
         } else if (id == R.id.filter_oldest_first) {
-            sortMethod = SortMethod.OLD_FIRST;
+            taskViewModel.setSortMethod(SortMethod.OLD_FIRST);
         } else if (id == R.id.filter_recent_first) {
-            sortMethod = SortMethod.RECENT_FIRST;
+            taskViewModel.setSortMethod(SortMethod.RECENT_FIRST);
+        } else if (id == R.id.filter_all_projects) {
+            taskViewModel.setProjectFilter(TaskViewModel.ALL_PROJECTS);
         }
 
-        observeTasks();
-
         return super.onOptionsItemSelected(item);
     }
 
     @Override
-    public void onDeleteTask(Task task) {
-        taskViewModel.deleteTask(task.getId());
-        observeTasks();
+    public void onDeleteTask(long taskId) {
+        if (taskViewModel != null) {
+            taskViewModel.deleteTask(taskId);
+            if (taskId > 0) { // A task whose creation was pending is not created at all, there is nothing to restore
+                showUndoDeletion(Collections.singletonList(taskId));
+            }
+        }
+    }
+
+    /**
+     * Shows a Snackbar offering to undo the deletion of the given tasks, which restores them.
+     *
+     * @param taskIds the IDs of the deleted tasks
+     */
+    private void showUndoDeletion(@NonNull List<Long> taskIds) {
+        if (taskIds.isEmpty()) {
+            return;
+        }
+        Snackbar.make(listTasks, getResources().getQuantityString(R.plurals.deleted_tasks, taskIds.size(), taskIds.size()), Snackbar.LENGTH_LONG)
+                .setAction(R.string.undo, view -> {
+                    if (taskViewModel != null) {
+                        taskViewModel.restoreTasks(taskIds);
+                    }
+                })
+                .show();
+    }
+
+    @Override
+    public void onToggleTaskSelection(long taskId) {
+        if (taskViewModel != null) {
+            taskViewModel.toggleSelection(taskId);
+        }
+    }
+
+    /**
+     * Updates the selected tasks in the UI: highlights their rows,
+     * and shows the selection action mode with the number of selected tasks while the selection is not empty.
+     *
+     * @param selection the IDs of the selected tasks
+     */
+    private void updateSelection(@NonNull TaskSelection selection) {
+        adapter.updateSelection(selection);
+        if (selection.isEmpty()) {
+            if (selectionActionMode != null) {
+                selectionActionMode.finish();
+            }
+            return;
+        }
+        if (selectionActionMode == null) {
+            selectionActionMode = startSupportActionMode(selectionActionModeCallback);
+        }
+        if (selectionActionMode != null) {
+            selectionActionMode.setTitle(getResources().getQuantityString(R.plurals.selected_tasks, selection.size(), selection.size()));
+        }
+    }
+
+    /**
+     * Shows the Dialog for choosing the project the selected tasks are moved to.
+     */
+    private void showMoveTasksDialog() {
+        final List<Project> projects = taskViewModel != null ? taskViewModel.getAllProjects().getValue() : null;
+        if (projects == null) {
+            return;
+        }
+        final String[] projectNames = new String[projects.size()];
+        for (int i = 0; i < projects.size(); i++) {
+            projectNames[i] = projects.get(i).getName();
+        }
+        new AlertDialog.Builder(this, R.style.Dialog)
+                .setTitle(R.string.move_selected_tasks)
+                .setItems(projectNames, (dialogInterface, which) -> {
+                    // One statement moving all the selected tasks, the rows are updated when the list is loaded again
+                    taskViewModel.moveSelectedTasks(projects.get(which).getId());
+                })
+                .show();
     }
 
     /**
@@ -231,36 +456,38 @@ public class MainActivity extends AppCompatActivity implements TasksAdapter.Dele
      */
     private void addTask(@NonNull Task task) {
         taskViewModel.createTask(task);
-        observeTasks();
     }
 
     /**
-     * Updates the list of tasks in the UI
+     * Updates the list of tasks in the UI.
+     * The tasks are already sorted by the database according to the selected sort method,
+     * and only the pages around the visible window are loaded.
      */
-    private void updateTasks(List<Task> tasks) {
-        if (tasks.size() == 0) {
+    private void updateTasks(PagedList<TaskWithProject> tasks) {
+        adapter.updateTasks(tasks);
+        updateEmptyState();
+    }
+
+    /**
+     * Updates the changes of the user which are not reflected by the list of tasks yet,
+     * displayed over it on the next frame.
+     */
+    private void updatePendingChanges(PendingTaskChanges changes) {
+        adapter.updatePendingChanges(changes);
+        updateEmptyState();
+    }
+
+    /**
+     * Shows the message telling there is no task instead of the list when no task is displayed.
+     */
+    private void updateEmptyState() {
+        if (adapter.getVisibleTaskCount() == 0) {
             lblNoTasks.setVisibility(View.VISIBLE);
             listTasks.setVisibility(View.GONE);
         } else {
             lblNoTasks.setVisibility(View.GONE);
             listTasks.setVisibility(View.VISIBLE);
-            switch (sortMethod) {
-                case ALPHABETICAL:
-                    Collections.sort(tasks, new Task.TaskAZComparator());
-                    break;
-                case ALPHABETICAL_INVERTED:
-                    Collections.sort(tasks, new Task.TaskZAComparator());
-                    break;
-                case RECENT_FIRST:
-                    Collections.sort(tasks, new Task.TaskRecentComparator());
-                    break;
-                case OLD_FIRST:
-                    Collections.sort(tasks, new Task.TaskOldComparator());
-                    break;
-
-            }
         }
-        adapter.updateTasks(tasks);
     }
 
     /**
@@ -307,43 +534,32 @@ public class MainActivity extends AppCompatActivity implements TasksAdapter.Dele
     }
 
     /**
-     * Sets the data of the Spinner with projects to associate to a new task
+     * Sets the data of the Spinner with projects to associate to a new task.
+     * Called when the dialog is shown and each time the list of projects changes.
      */
     private void populateDialogSpinner() {
 
-        taskViewModel.getAllProjects().observe(this, projects -> {
+        // Reads the last projects emitted to the observer set in onCreate, instead of adding an observer on each call
+        final List<Project> projects = taskViewModel != null ? taskViewModel.getAllProjects().getValue() : null;
+        if (dialogSpinner != null && projects != null) {
             final ArrayAdapter<Project> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, projects);
             adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-            if (dialogSpinner != null) {
-                dialogSpinner.setAdapter(adapter);
-            }
-        });
+            dialogSpinner.setAdapter(adapter);
+        }
 
     }
 
     /**
-     * List of all possible sort methods for task
+     * Writes the state of the activity when requested by {@code adb shell dumpsys activity com.cleanup.todoc},
+     * followed by the latency metrics of the database queries when they are enabled.
      */
-    private enum SortMethod {
-        /**
-         * Sort alphabetical by name
-         */
-        ALPHABETICAL,
-        /**
-         * Inverted sort alphabetical by name
-         */
-        ALPHABETICAL_INVERTED,
-        /**
-         * Lastly created first
-         */
-        RECENT_FIRST,
-        /**
-         * First created first
-         */
-        OLD_FIRST,
-        /**
-         * No sort
-         */
-        NONE
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd, @NonNull PrintWriter writer, @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+
+        QueryMetrics queryMetrics = TodocDatabase.getInstance(this).getQueryMetrics();
+        if (queryMetrics != null) {
+            queryMetrics.dump(writer);
+        }
     }
 }
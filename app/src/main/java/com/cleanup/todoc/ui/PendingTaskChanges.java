@@ -0,0 +1,146 @@
+package com.cleanup.todoc.ui;
+
+import androidx.annotation.NonNull;
+
+import com.cleanup.todoc.models.TaskWithProject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Changes of the list of tasks made by the user which are not reflected by the list loaded from the database yet:
+ * the rows of the created tasks, displayed among the loaded ones at their place in the order of the list,
+ * and the IDs of the deleted tasks, whose rows are left out of the displayed list.
+ * Instances are immutable, each change creates a new instance.
+ */
+final class PendingTaskChanges {
+
+    /**
+     * No pending change.
+     */
+    static final PendingTaskChanges NONE = new PendingTaskChanges(Collections.emptyList(), Collections.emptySet(), (left, right) -> 0);
+
+    /**
+     * The rows of the created tasks, in the order of the list. Their IDs are temporary negative IDs.
+     */
+    @NonNull
+    private final List<TaskWithProject> createdRows;
+
+    /**
+     * The IDs of the deleted tasks.
+     */
+    @NonNull
+    private final Set<Long> deletedTaskIds;
+
+    /**
+     * The order of the rows of the list, placing the rows of the created tasks among the loaded ones.
+     */
+    @NonNull
+    private final Comparator<TaskWithProject> rowOrder;
+
+    /**
+     * Constructor for creating a PendingTaskChanges object.
+     *
+     * @param createdRows    The rows of the created tasks, in the order of the list.
+     * @param deletedTaskIds The IDs of the deleted tasks.
+     * @param rowOrder       The order of the rows of the list.
+     */
+    PendingTaskChanges(@NonNull List<TaskWithProject> createdRows, @NonNull Set<Long> deletedTaskIds,
+                       @NonNull Comparator<TaskWithProject> rowOrder) {
+        this.createdRows = Collections.unmodifiableList(createdRows);
+        this.deletedTaskIds = Collections.unmodifiableSet(deletedTaskIds);
+        this.rowOrder = rowOrder;
+    }
+
+
+    // --- GETTERS ---
+    @NonNull
+    List<TaskWithProject> getCreatedRows() {
+        return createdRows;
+    }
+
+    @NonNull
+    Set<Long> getDeletedTaskIds() {
+        return deletedTaskIds;
+    }
+
+    @NonNull
+    Comparator<TaskWithProject> getRowOrder() {
+        return rowOrder;
+    }
+
+    /**
+     * Returns whether the task with the specified ID is pending deletion.
+     *
+     * @param taskId The ID of the task.
+     * @return True if the task is pending deletion.
+     */
+    boolean isDeleted(long taskId) {
+        return deletedTaskIds.contains(taskId);
+    }
+
+    /**
+     * Applies the pending changes to the loaded rows of the list: the rows of the deleted tasks are left out,
+     * and each row of a created task is placed before the first loaded row which comes after it in the order of the list.
+     * The loaded rows are in the order of the list unless they have been loaded with other criteria,
+     * in which case the rows are placed again when the list matching the criteria is loaded.
+     *
+     * @param loadedRows The loaded rows of the paged list, without placeholders.
+     * @return The rows to display.
+     */
+    @NonNull
+    DisplayedTaskRows applyTo(@NonNull List<TaskWithProject> loadedRows) {
+        int[] anchors = new int[createdRows.size()];
+        for (int i = 0; i < anchors.length; i++) {
+            anchors[i] = getInsertionPosition(loadedRows, createdRows.get(i), rowOrder);
+        }
+
+        List<TaskWithProject> rows = new ArrayList<>(loadedRows.size() + anchors.length);
+        int[] loadedPositions = new int[loadedRows.size() + anchors.length];
+        int createdIndex = 0;
+        for (int loadedPosition = 0; loadedPosition < loadedRows.size(); loadedPosition++) {
+            while (createdIndex < anchors.length && anchors[createdIndex] <= loadedPosition) {
+                loadedPositions[rows.size()] = -1;
+                rows.add(createdRows.get(createdIndex++));
+            }
+            TaskWithProject row = loadedRows.get(loadedPosition);
+            if (!deletedTaskIds.contains(row.getId())) {
+                loadedPositions[rows.size()] = loadedPosition;
+                rows.add(row);
+            }
+        }
+        while (createdIndex < anchors.length) { // After all the loaded rows
+            loadedPositions[rows.size()] = -1;
+            rows.add(createdRows.get(createdIndex++));
+        }
+        return new DisplayedTaskRows(rows, Arrays.copyOf(loadedPositions, rows.size()));
+    }
+
+    /**
+     * Returns the position of the first loaded row which comes after the given row in the order of the list, by binary search.
+     * The row is placed after the loaded rows it ties with.
+     *
+     * @param loadedRows The loaded rows, in the order of the list.
+     * @param row        The row of a created task.
+     * @param rowOrder   The order of the list.
+     * @return The position of the loaded row, or the number of loaded rows if the row comes after all of them.
+     */
+    static int getInsertionPosition(@NonNull List<TaskWithProject> loadedRows, @NonNull TaskWithProject row,
+                                    @NonNull Comparator<TaskWithProject> rowOrder) {
+        int low = 0;
+        int high = loadedRows.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rowOrder.compare(loadedRows.get(middle), row) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
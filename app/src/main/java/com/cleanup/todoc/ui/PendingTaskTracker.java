@@ -0,0 +1,254 @@
+package com.cleanup.todoc.ui;
+
+import androidx.annotation.NonNull;
+
+import com.cleanup.todoc.models.Project;
+import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskWithProject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the changes made by the user which are not reflected by the displayed list yet,
+ * from the moment they are made until the list loaded after their commit reflects them, or until they fail.
+ * Its methods are called on the main thread.
+ */
+final class PendingTaskTracker {
+
+    /**
+     * The writes the tracker needs to apply itself, when a created task is deleted while its creation is being applied.
+     */
+    interface TaskWrites {
+        /**
+         * Deletes the stored task with the specified ID.
+         *
+         * @param taskId The ID of the task.
+         */
+        void deleteTask(long taskId);
+
+        /**
+         * Cancels the creation of the specified task, if it has not been applied yet.
+         *
+         * @param task The created task.
+         * @return True if the creation has been cancelled, false if it is being applied or has been applied.
+         */
+        boolean cancelCreation(@NonNull Task task);
+    }
+
+    /**
+     * The writes applied by the tracker.
+     */
+    @NonNull
+    private final TaskWrites taskWrites;
+
+    /**
+     * The tasks created by the user which are not reflected by the displayed list yet, with their rows, in the order of their creation.
+     * Tasks are compared by identity, since they have no ID until they are inserted.
+     */
+    private final Map<Task, TaskWithProject> pendingCreations = new LinkedHashMap<>();
+
+    /**
+     * The IDs of the tasks deleted by the user which are not reflected by the displayed list yet.
+     */
+    private final Set<Long> pendingDeletions = new HashSet<>();
+
+    /**
+     * The created tasks which have been committed, whose rows are removed when the next list is loaded.
+     */
+    private final List<Task> committedCreations = new ArrayList<>();
+
+    /**
+     * The IDs of the deleted tasks which have been committed, no longer hidden once the next list, which does not contain them, is loaded.
+     */
+    private final List<Long> committedDeletions = new ArrayList<>();
+
+    /**
+     * The created tasks deleted by the user while their creation was being applied, to be deleted once they have an ID.
+     */
+    private final List<Task> creationsToDelete = new ArrayList<>();
+
+    /**
+     * Temporary ID of the next row of a created task, negative so that it never matches the ID of a stored task.
+     */
+    private long nextTemporaryId = -1;
+
+    /**
+     * Instantiates a new PendingTaskTracker.
+     *
+     * @param taskWrites The writes applied by the tracker.
+     */
+    PendingTaskTracker(@NonNull TaskWrites taskWrites) {
+        this.taskWrites = taskWrites;
+    }
+
+    /**
+     * Adds the row of a created task, with the project found in the registry.
+     *
+     * @param task The created task.
+     */
+    void addCreation(@NonNull Task task) {
+        Project project = task.getProject();
+        pendingCreations.put(task, new TaskWithProject(nextTemporaryId--, task.getName(), task.getCreationTimestamp(),
+                project != null ? project.getName() : "", project != null ? project.getColor() : 0));
+    }
+
+    /**
+     * Hides the rows of deleted tasks.
+     *
+     * @param taskIds The IDs of the deleted tasks.
+     */
+    void addDeletions(@NonNull Collection<Long> taskIds) {
+        pendingDeletions.addAll(taskIds);
+    }
+
+    /**
+     * Shows again the rows of restored tasks.
+     *
+     * @param taskIds The IDs of the restored tasks.
+     */
+    void removeDeletions(@NonNull Collection<Long> taskIds) {
+        pendingDeletions.removeAll(taskIds);
+        committedDeletions.removeAll(taskIds);
+    }
+
+    /**
+     * Deletes a created task whose row is still displayed.
+     * Its creation is cancelled if it has not been applied yet, otherwise the task is deleted as soon as it has an ID.
+     *
+     * @param temporaryId The temporary ID of the row of the task.
+     * @return True if the pending changes changed.
+     */
+    boolean deleteCreation(long temporaryId) {
+        for (Map.Entry<Task, TaskWithProject> creation : pendingCreations.entrySet()) {
+            if (creation.getValue().getId() != temporaryId) {
+                continue;
+            }
+            Task task = creation.getKey();
+            pendingCreations.remove(task);
+            committedCreations.remove(task);
+            if (task.getId() > 0) {
+                deleteStoredTask(task.getId()); // Already committed, the loaded list may show it soon
+            } else if (!taskWrites.cancelCreation(task)) {
+                creationsToDelete.add(task); // Being applied, deleted once the creation is committed
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the changes of a committed group of writes, which are reconciled when the next list is loaded.
+     * The created tasks deleted by the user in the meantime are deleted now that they have an ID.
+     *
+     * @param createdTasks   The created tasks, which now have their IDs.
+     * @param deletedTaskIds The IDs of the deleted tasks.
+     * @return True if the pending changes changed.
+     */
+    boolean onWritesCommitted(@NonNull List<Task> createdTasks, @NonNull List<Long> deletedTaskIds) {
+        boolean changed = false;
+        for (Task task : createdTasks) {
+            if (pendingCreations.containsKey(task)) {
+                committedCreations.add(task);
+            } else if (creationsToDelete.remove(task)) {
+                deleteStoredTask(task.getId());
+                changed = true;
+            }
+        }
+        for (Long taskId : deletedTaskIds) {
+            if (pendingDeletions.contains(taskId)) {
+                committedDeletions.add(taskId);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Rolls back the changes of a group of writes which failed: the created tasks disappear and the deleted tasks are shown again.
+     *
+     * @param createdTasks   The tasks which have not been created.
+     * @param deletedTaskIds The IDs of the tasks which have not been deleted.
+     * @return True if the pending changes changed.
+     */
+    boolean onWritesRolledBack(@NonNull List<Task> createdTasks, @NonNull List<Long> deletedTaskIds) {
+        boolean changed = false;
+        for (Task task : createdTasks) {
+            changed |= pendingCreations.remove(task) != null;
+            creationsToDelete.remove(task);
+        }
+        changed |= pendingDeletions.removeAll(deletedTaskIds);
+        return changed;
+    }
+
+    /**
+     * Reconciles the pending changes with a newly loaded list, by task ID.
+     * The committed changes are reflected by the list: they are dropped. A created task whose row is already loaded is dropped too,
+     * in case the list is loaded before the commit is reported.
+     *
+     * @param loadedRows The loaded rows of the new list.
+     * @return True if the pending changes changed.
+     */
+    boolean onTasksLoaded(@NonNull List<TaskWithProject> loadedRows) {
+        boolean changed = false;
+        for (Task task : committedCreations) {
+            changed |= pendingCreations.remove(task) != null;
+        }
+        committedCreations.clear();
+        changed |= pendingDeletions.removeAll(committedDeletions);
+        committedDeletions.clear();
+
+        if (!pendingCreations.isEmpty()) {
+            Set<Long> loadedIds = new HashSet<>();
+            for (TaskWithProject row : loadedRows) {
+                loadedIds.add(row.getId());
+            }
+            for (Task task : new ArrayList<>(pendingCreations.keySet())) {
+                if (task.getId() > 0 && loadedIds.contains(task.getId())) {
+                    pendingCreations.remove(task);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the pending changes of the list matching the given criteria: the rows of the created tasks belonging to it,
+     * in its order, and the IDs of the deleted tasks.
+     *
+     * @param criteria The criteria of the displayed list.
+     * @return The pending changes, {@link PendingTaskChanges#NONE} if there is none.
+     */
+    @NonNull
+    PendingTaskChanges getChanges(@NonNull TaskListCriteria criteria) {
+        if (pendingCreations.isEmpty() && pendingDeletions.isEmpty()) {
+            return PendingTaskChanges.NONE;
+        }
+        Comparator<TaskWithProject> rowOrder = criteria.getRowOrder();
+        List<TaskWithProject> createdRows = new ArrayList<>();
+        for (Map.Entry<Task, TaskWithProject> creation : pendingCreations.entrySet()) {
+            if (criteria.matches(creation.getKey())) {
+                createdRows.add(creation.getValue());
+            }
+        }
+        Collections.sort(createdRows, rowOrder);
+        return new PendingTaskChanges(createdRows, new HashSet<>(pendingDeletions), rowOrder);
+    }
+
+    /**
+     * Hides the row of a stored task and deletes it.
+     *
+     * @param taskId The ID of the task.
+     */
+    private void deleteStoredTask(long taskId) {
+        pendingDeletions.add(taskId);
+        taskWrites.deleteTask(taskId);
+    }
+}
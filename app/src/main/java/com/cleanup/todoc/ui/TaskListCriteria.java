@@ -0,0 +1,194 @@
+package com.cleanup.todoc.ui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cleanup.todoc.models.SortMethod;
+import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskWithProject;
+import com.cleanup.todoc.repositories.TaskDataRepository;
+
+import java.text.Collator;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Criteria of the list of tasks displayed to the user: its sort method, its project filter and its search text.
+ * Instances are immutable, each change of criteria creates a new instance, so that a change is emitted as a single value.
+ */
+final class TaskListCriteria {
+
+    /**
+     * The sort method selected by the user.
+     */
+    @NonNull
+    private final SortMethod sortMethod;
+
+    /**
+     * The ID of the project whose tasks are displayed, or {@link TaskViewModel#ALL_PROJECTS}.
+     */
+    private final long projectId;
+
+    /**
+     * The search text applied to the list, empty when no search is applied.
+     */
+    @NonNull
+    private final String searchText;
+
+    /**
+     * The order of the rows of the list, built on the first call to {@link #getRowOrder()}, on the main thread.
+     */
+    @Nullable
+    private Comparator<TaskWithProject> rowOrder;
+
+    /**
+     * Constructor for creating a TaskListCriteria object.
+     *
+     * @param sortMethod The sort method selected by the user.
+     * @param projectId  The ID of the project whose tasks are displayed, or {@link TaskViewModel#ALL_PROJECTS}.
+     * @param searchText The search text applied to the list, empty when no search is applied.
+     */
+    TaskListCriteria(@NonNull SortMethod sortMethod, long projectId, @NonNull String searchText) {
+        this.sortMethod = sortMethod;
+        this.projectId = projectId;
+        this.searchText = searchText;
+    }
+
+
+    // --- GETTERS ---
+    @NonNull
+    SortMethod getSortMethod() {
+        return sortMethod;
+    }
+
+    long getProjectId() {
+        return projectId;
+    }
+
+    @NonNull
+    String getSearchText() {
+        return searchText;
+    }
+
+
+    /**
+     * Returns whether the given task belongs to the list: it is in the selected project, if any,
+     * and its name matches the search text the way the full-text index matches the stored names.
+     *
+     * @param task The task, which may not be stored yet.
+     * @return True if the task belongs to the list.
+     */
+    boolean matches(@NonNull Task task) {
+        return (projectId == TaskViewModel.ALL_PROJECTS || projectId == task.getProjectId())
+                && TaskDataRepository.matchesSearchText(task.getName(), searchText);
+    }
+
+    /**
+     * Returns the order of the rows of the list, the order of the query which loads it:
+     * the relevance when a search text is applied, the sort method otherwise.
+     * The rows of the tasks which are not stored yet, with a temporary negative ID, come after the stored rows they tie with,
+     * in the order of their creation, since they will get the greatest IDs.
+     * The comparator is built once per criteria, with its own collator, and must only be used on the main thread.
+     *
+     * @return The comparator of the rows of the list.
+     */
+    @NonNull
+    Comparator<TaskWithProject> getRowOrder() {
+        if (rowOrder == null) {
+            rowOrder = buildRowOrder();
+        }
+        return rowOrder;
+    }
+
+    /**
+     * Builds the order of the rows of the list, described by {@link #getRowOrder()}.
+     * The names are compared like the LOCALIZED collation of the database compares them, by a collator of the user's language.
+     *
+     * @return The comparator of the rows of the list.
+     */
+    @NonNull
+    private Comparator<TaskWithProject> buildRowOrder() {
+        final String namePrefix = searchText.trim().toLowerCase(Locale.ROOT);
+        final Collator collator = Collator.getInstance();
+        final Comparator<TaskWithProject> order;
+        if (!namePrefix.isEmpty()) { // The names starting with the text first, then the shortest names
+            order = (left, right) -> {
+                int compared = Boolean.compare(right.getName().toLowerCase(Locale.ROOT).startsWith(namePrefix),
+                        left.getName().toLowerCase(Locale.ROOT).startsWith(namePrefix));
+                return compared != 0 ? compared : Integer.compare(left.getName().length(), right.getName().length());
+            };
+        } else {
+            switch (sortMethod) {
+                case ALPHABETICAL:
+                    order = (left, right) -> collator.compare(left.getName(), right.getName());
+                    break;
+                case ALPHABETICAL_INVERTED:
+                    order = (left, right) -> collator.compare(right.getName(), left.getName());
+                    break;
+                case RECENT_FIRST:
+                    order = (left, right) -> Long.compare(right.getCreationTimestamp(), left.getCreationTimestamp());
+                    break;
+                case OLD_FIRST:
+                    order = (left, right) -> Long.compare(left.getCreationTimestamp(), right.getCreationTimestamp());
+                    break;
+                default:
+                    order = (left, right) -> 0; // By ID only
+                    break;
+            }
+        }
+        return (left, right) -> {
+            int compared = order.compare(left, right);
+            return compared != 0 ? compared : Long.compare(getIdRank(left), getIdRank(right));
+        };
+    }
+
+    /**
+     * Returns the rank of a row among the rows the order ties with: its ID for a stored task,
+     * and a rank greater than all the IDs, in the order of creation, for a task which is not stored yet.
+     *
+     * @param row The row.
+     * @return The rank of the row.
+     */
+    private static long getIdRank(@NonNull TaskWithProject row) {
+        return row.getId() > 0 ? row.getId() : Long.MAX_VALUE / 2 - row.getId(); // Temporary IDs decrease from -1
+    }
+
+
+    // --- COPIES ---
+    @NonNull
+    TaskListCriteria withSortMethod(@NonNull SortMethod sortMethod) {
+        return new TaskListCriteria(sortMethod, projectId, searchText);
+    }
+
+    @NonNull
+    TaskListCriteria withProjectId(long projectId) {
+        return new TaskListCriteria(sortMethod, projectId, searchText);
+    }
+
+    @NonNull
+    TaskListCriteria withSearchText(@NonNull String searchText) {
+        return new TaskListCriteria(sortMethod, projectId, searchText);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TaskListCriteria)) {
+            return false;
+        }
+        TaskListCriteria criteria = (TaskListCriteria) other;
+        return sortMethod == criteria.sortMethod
+                && projectId == criteria.projectId
+                && searchText.equals(criteria.searchText);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = sortMethod.hashCode();
+        result = 31 * result + (int) (projectId ^ (projectId >>> 32));
+        result = 31 * result + searchText.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+package com.cleanup.todoc.ui;
+
+import android.widget.TextView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.collection.LruCache;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+
+import com.cleanup.todoc.models.TaskWithProject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Cache of the texts of the rows of the list of tasks, measured in the background before the rows are bound.
+ *
+ * The glyphs of the task names and project names are measured on a background thread as soon as the rows are loaded,
+ * so that binding a row only lays out text which has already been measured, instead of measuring it on the UI thread.
+ * Task names are cached by task ID along with the measured name, so a renamed task is measured again;
+ * project names are cached by name since few projects are shared by all the rows.
+ */
+final class TaskTextCache {
+
+    /**
+     * Number of task names kept in the cache, a few pages of the paged list around the visible window.
+     */
+    private static final int TASK_NAME_CACHE_SIZE = 500;
+
+    /**
+     * Number of project names kept in the cache.
+     */
+    private static final int PROJECT_NAME_CACHE_SIZE = 32;
+
+    /**
+     * Executor measuring the texts, a single thread below the priority of the UI thread.
+     */
+    private static final Executor EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todoc-text");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    /**
+     * The measured task names, indexed by task ID. LruCache is synchronized, it is filled by the executor and read on the UI thread.
+     */
+    @NonNull
+    private final LruCache<Long, TaskName> taskNames = new LruCache<>(TASK_NAME_CACHE_SIZE);
+
+    /**
+     * The measured project names, indexed by project name.
+     */
+    @NonNull
+    private final LruCache<String, PrecomputedTextCompat> projectNames = new LruCache<>(PROJECT_NAME_CACHE_SIZE);
+
+    /**
+     * The parameters of the TextView displaying the task name, null until a row has been attached.
+     */
+    @Nullable
+    private PrecomputedTextCompat.Params taskNameParams;
+
+    /**
+     * The parameters of the TextView displaying the project name, null until a row has been attached.
+     */
+    @Nullable
+    private PrecomputedTextCompat.Params projectNameParams;
+
+    /**
+     * Returns whether the parameters of the TextViews have been set, texts can only be measured afterwards.
+     *
+     * @return True if the parameters of the TextViews are known.
+     */
+    @MainThread
+    boolean hasParams() {
+        return taskNameParams != null;
+    }
+
+    /**
+     * Sets the parameters the texts are measured with, read from the TextViews of a row attached to the window:
+     * the text direction of a TextView is only resolved once it is attached.
+     *
+     * @param lblTaskName    The TextView displaying the task name.
+     * @param lblProjectName The TextView displaying the project name.
+     */
+    @MainThread
+    void setParams(@NonNull TextView lblTaskName, @NonNull TextView lblProjectName) {
+        taskNameParams = TextViewCompat.getTextMetricsParams(lblTaskName);
+        projectNameParams = TextViewCompat.getTextMetricsParams(lblProjectName);
+    }
+
+    /**
+     * Measures in the background the texts of the given rows which are not cached yet.
+     * Does nothing until the parameters of the TextViews have been set.
+     *
+     * @param rows The rows which are about to be bound, null items are ignored.
+     */
+    @MainThread
+    void precompute(@NonNull List<TaskWithProject> rows) {
+        final PrecomputedTextCompat.Params taskParams = taskNameParams;
+        final PrecomputedTextCompat.Params projectParams = projectNameParams;
+        if (taskParams == null || projectParams == null) {
+            return;
+        }
+        final List<TaskWithProject> missingRows = new ArrayList<>();
+        for (TaskWithProject row : rows) {
+            if (row != null && (getTaskName(row) == null || getProjectName(row) == null)) {
+                missingRows.add(row);
+            }
+        }
+        if (!missingRows.isEmpty()) {
+            EXECUTOR.execute(() -> measure(missingRows, taskParams, projectParams));
+        }
+    }
+
+    /**
+     * Measures the texts of the given rows and caches them.
+     *
+     * @param rows          The rows whose texts are measured.
+     * @param taskParams    The parameters of the TextView displaying the task name.
+     * @param projectParams The parameters of the TextView displaying the project name.
+     */
+    @WorkerThread
+    private void measure(@NonNull List<TaskWithProject> rows, @NonNull PrecomputedTextCompat.Params taskParams,
+                         @NonNull PrecomputedTextCompat.Params projectParams) {
+        for (TaskWithProject row : rows) {
+            if (getTaskName(row) == null) {
+                taskNames.put(row.getId(), new TaskName(row.getName(), PrecomputedTextCompat.create(row.getName(), taskParams)));
+            }
+            if (getProjectName(row) == null) {
+                projectNames.put(row.getProjectName(), PrecomputedTextCompat.create(row.getProjectName(), projectParams));
+            }
+        }
+    }
+
+    /**
+     * Returns the measured name of the task of the given row, if it has been measured with the current name of the task.
+     *
+     * @param row The row displaying the task.
+     * @return The measured task name, or null if it is not cached.
+     */
+    @Nullable
+    PrecomputedTextCompat getTaskName(@NonNull TaskWithProject row) {
+        TaskName taskName = taskNames.get(row.getId());
+        return taskName != null && taskName.name.equals(row.getName()) ? taskName.text : null;
+    }
+
+    /**
+     * Returns the measured name of the project of the given row.
+     *
+     * @param row The row displaying the project.
+     * @return The measured project name, or null if it is not cached.
+     */
+    @Nullable
+    PrecomputedTextCompat getProjectName(@NonNull TaskWithProject row) {
+        return projectNames.get(row.getProjectName());
+    }
+
+    /**
+     * A measured task name, along with the name it has been measured from.
+     */
+    private static final class TaskName {
+
+        /**
+         * The name of the task the text has been measured from.
+         */
+        @NonNull
+        final String name;
+
+        /**
+         * The measured name.
+         */
+        @NonNull
+        final PrecomputedTextCompat text;
+
+        /**
+         * Constructor for creating a TaskName object.
+         *
+         * @param name The name of the task.
+         * @param text The measured name.
+         */
+        TaskName(@NonNull String name, @NonNull PrecomputedTextCompat text) {
+            this.name = name;
+            this.text = text;
+        }
+    }
+}
@@ -1,49 +1,207 @@
 package com.cleanup.todoc.ui;
 
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
 import androidx.lifecycle.ViewModel;
+import androidx.paging.PagedList;
 
 import com.cleanup.todoc.models.Project;
+import com.cleanup.todoc.models.ProjectRegistry;
+import com.cleanup.todoc.models.SortMethod;
 import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskSelection;
+import com.cleanup.todoc.models.TaskWithProject;
 import com.cleanup.todoc.repositories.ProjectDataRepository;
 import com.cleanup.todoc.repositories.TaskDataRepository;
+import com.cleanup.todoc.repositories.TaskWriteQueue;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Executor;
 
 /**
  * ViewModel class responsible for managing data and operations related to tasks and projects.
  */
 public class TaskViewModel extends ViewModel {
 
+    /**
+     * Delay without typing after which the search text is applied, so that a query is not run for each keystroke.
+     */
+    private static final long SEARCH_DEBOUNCE_MILLIS = 300;
+
+    /**
+     * Value of the project filter showing the tasks of all projects (project IDs start at 1).
+     */
+    public static final long ALL_PROJECTS = 0;
+
     // REPOSITORIES
     private final TaskDataRepository taskDataSource;
 
     private final ProjectDataRepository projectDataSource;
 
     /**
-     * Executor for performing operations outside the main (UI) thread.
+     * Queue applying the writes of the tasks outside the main (UI) thread, grouping the writes of a burst into one transaction.
      */
-    private final Executor executor;
+    private final TaskWriteQueue taskWriteQueue;
 
     // DATA
     @Nullable
 
     private LiveData<List<Project>> projects;
 
+    /**
+     * The criteria of the displayed list: sort method, project filter and applied search text.
+     * It is the single source of the list, so that a change of any criterion results in exactly one new query.
+     */
+    private final MutableLiveData<TaskListCriteria> criteria =
+            new MutableLiveData<>(new TaskListCriteria(SortMethod.NONE, ALL_PROJECTS, ""));
+
+    /**
+     * The ID of the project whose tasks are displayed, or {@link #ALL_PROJECTS}, emitted only when it changes.
+     */
+    private final LiveData<Long> projectFilter =
+            Transformations.distinctUntilChanged(Transformations.map(criteria, TaskListCriteria::getProjectId));
+
+    /**
+     * Handler running on the main thread the delayed application of the search text typed by the user, and the outcomes of the writes.
+     */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The last search text typed by the user, not applied yet.
+     */
+    @NonNull
+    private String pendingSearchText = "";
+
+    /**
+     * Applies the last search text typed by the user.
+     */
+    private final Runnable applySearchText = () -> updateCriteria(getCriteria().withSearchText(pendingSearchText));
+
+    /**
+     * The paged list of the rows to display, each task being joined with its project:
+     * the search results when a search text is applied, the sorted tasks otherwise, restricted to the selected project if any.
+     * Each change of criteria switches the observed query, so observers only need to subscribe once,
+     * and each change of the database is delivered as one paged list loaded by the current query.
+     */
+    private final LiveData<PagedList<TaskWithProject>> tasks;
+
+    /**
+     * The changes made by the user which are not reflected by the displayed list yet, displayed over it.
+     */
+    private final MutableLiveData<PendingTaskChanges> pendingChanges = new MutableLiveData<>(PendingTaskChanges.NONE);
+
+    /**
+     * Tracker of the changes made by the user until the displayed list reflects them.
+     */
+    private final PendingTaskTracker pendingTasks;
+
+    /**
+     * The IDs of the tasks selected by the user, on which the bulk actions apply.
+     */
+    private final MutableLiveData<TaskSelection> selection = new MutableLiveData<>(TaskSelection.EMPTY);
+
+    /**
+     * Listener of the outcome of the writes, reconciling the pending changes on the main thread.
+     */
+    private final TaskWriteQueue.WriteListener writeListener = new TaskWriteQueue.WriteListener() {
+        @Override
+        public void onWritesApplied(@NonNull List<Task> createdTasks, @NonNull List<Long> deletedTaskIds) {
+            mainHandler.post(() -> {
+                if (pendingTasks.onWritesCommitted(createdTasks, deletedTaskIds)) {
+                    publishPendingChanges();
+                }
+            });
+        }
+
+        @Override
+        public void onWritesFailed(@NonNull List<Task> createdTasks, @NonNull List<Long> deletedTaskIds, @NonNull RuntimeException error) {
+            mainHandler.post(() -> {
+                if (pendingTasks.onWritesRolledBack(createdTasks, deletedTaskIds)) {
+                    publishPendingChanges();
+                }
+            });
+        }
+    };
 
     /**
-     * Constructs a new TaskViewModel with the specified data repositories and executor.
+     * Constructs a new TaskViewModel with the specified data repositories and write queue.
      *
      * @param taskDataSource    The data repository for tasks.
      * @param projectDataSource The data repository for projects.
-     * @param executor          The executor for performing background operations.
+     * @param taskWriteQueue    The queue applying the writes of the tasks in the background.
      */
-    public TaskViewModel(TaskDataRepository taskDataSource, ProjectDataRepository projectDataSource, Executor executor) {
+    public TaskViewModel(TaskDataRepository taskDataSource, ProjectDataRepository projectDataSource, TaskWriteQueue taskWriteQueue) {
         this.taskDataSource = taskDataSource;
         this.projectDataSource = projectDataSource;
-        this.executor = executor;
+        this.taskWriteQueue = taskWriteQueue;
+        this.pendingTasks = new PendingTaskTracker(new PendingTaskTracker.TaskWrites() {
+            @Override
+            public void deleteTask(long taskId) {
+                taskWriteQueue.deleteTask(taskId);
+            }
+
+            @Override
+            public boolean cancelCreation(@NonNull Task task) {
+                return taskWriteQueue.cancelCreation(task);
+            }
+        });
+        this.tasks = Transformations.map(Transformations.switchMap(criteria, this::loadTasks), loadedTasks -> {
+            if (pendingTasks.onTasksLoaded(loadedTasks.snapshot())) { // The snapshot does not trigger the loading of more pages
+                publishPendingChanges(); // The loaded list now reflects the committed changes, they are no longer displayed over it
+            }
+            return loadedTasks;
+        });
+        taskWriteQueue.addListener(writeListener);
+    }
+
+    /**
+     * Returns the paged list of the rows matching the given criteria, served by the query and the index matching them.
+     *
+     * @param criteria The criteria of the list.
+     * @return LiveData containing the paged list of the rows matching the criteria.
+     */
+    private LiveData<PagedList<TaskWithProject>> loadTasks(TaskListCriteria criteria) {
+        long projectId = criteria.getProjectId();
+        LiveData<PagedList<TaskWithProject>> searchResults = projectId == ALL_PROJECTS
+                ? taskDataSource.searchTasks(criteria.getSearchText())
+                : taskDataSource.searchProjectTasks(projectId, criteria.getSearchText());
+        if (searchResults != null) {
+            return searchResults;
+        }
+        return projectId == ALL_PROJECTS
+                ? taskDataSource.getPagedTasks(criteria.getSortMethod())
+                : taskDataSource.getPagedProjectTasks(projectId, criteria.getSortMethod());
+    }
+
+    /**
+     * Returns the current criteria of the displayed list.
+     *
+     * @return The current criteria of the displayed list.
+     */
+    @NonNull
+    private TaskListCriteria getCriteria() {
+        TaskListCriteria currentCriteria = criteria.getValue();
+        return currentCriteria != null ? currentCriteria : new TaskListCriteria(SortMethod.NONE, ALL_PROJECTS, "");
+    }
+
+    /**
+     * Applies new criteria to the displayed list, only if they differ from the current ones,
+     * so that selecting again the same sort method or project does not run the query again.
+     *
+     * @param newCriteria The new criteria of the displayed list.
+     */
+    private void updateCriteria(@NonNull TaskListCriteria newCriteria) {
+        if (!newCriteria.equals(criteria.getValue())) {
+            criteria.setValue(newCriteria);
+            publishPendingChanges(); // The created tasks displayed in the list, and their places, depend on the criteria too
+        }
     }
 
     /**
@@ -53,7 +211,10 @@ public class TaskViewModel extends ViewModel {
         if (this.projects != null) {
             return;
         }
-        projects = projectDataSource.getAllProjects();
+        projects = Transformations.map(projectDataSource.getAllProjects(), projectList -> {
+            ProjectRegistry.getInstance().update(projectList); // Task.getProject() reads the index of the projects stored in the database
+            return projectList;
+        });
     }
 
     // -------------
@@ -83,22 +244,128 @@ public class TaskViewModel extends ViewModel {
         return taskDataSource.getAllTasks();
     }
 
+    /**
+     * Retrieves LiveData containing the paged list of tasks to display:
+     * the tasks matching the search text ranked by relevance if any, or the tasks of the selected project sorted according to the selected sort method.
+     *
+     * @return LiveData containing the paged list of tasks to display.
+     */
+    public LiveData<PagedList<TaskWithProject>> getSortedTasks() {
+        return this.tasks;
+    }
+
+    /**
+     * Sets the sort method used to order the list of tasks.
+     *
+     * @param sortMethod The sort method to apply.
+     */
+    public void setSortMethod(@NonNull SortMethod sortMethod) {
+        updateCriteria(getCriteria().withSortMethod(sortMethod));
+    }
+
+    /**
+     * Retrieves LiveData containing the ID of the project whose tasks are displayed.
+     *
+     * @return LiveData containing the ID of the selected project, or {@link #ALL_PROJECTS}.
+     */
+    public LiveData<Long> getProjectFilter() {
+        return this.projectFilter;
+    }
+
+    /**
+     * Restricts the displayed tasks to the tasks of the specified project.
+     *
+     * @param projectId The ID of the project whose tasks are displayed, or {@link #ALL_PROJECTS} to display the tasks of all projects.
+     */
+    public void setProjectFilter(long projectId) {
+        updateCriteria(getCriteria().withProjectId(projectId));
+    }
+
+    /**
+     * Sets the search text typed by the user.
+     * The text is applied once the user stops typing for a short delay, or immediately when it is cleared.
+     *
+     * @param text The search text.
+     */
+    public void setSearchText(@NonNull String text) {
+        mainHandler.removeCallbacks(applySearchText);
+        pendingSearchText = text;
+        if (text.trim().isEmpty()) {
+            applySearchText.run();
+        } else {
+            mainHandler.postDelayed(applySearchText, SEARCH_DEBOUNCE_MILLIS);
+        }
+    }
+
+    /**
+     * Retrieves LiveData containing the changes made by the user which are not reflected by the displayed list yet:
+     * the rows of the created tasks to display among the loaded rows, and the IDs of the deleted tasks whose rows are left out of the list.
+     *
+     * @return LiveData containing the pending changes of the displayed list.
+     */
+    LiveData<PendingTaskChanges> getPendingChanges() {
+        return this.pendingChanges;
+    }
+
     /**
      * Creates a new task.
+     * Its row is displayed right away, placed among the loaded rows by a binary search in the order of the list,
+     * until the list loaded after the commit of the task contains it.
+     * The commit invalidates the paged list, which Room loads again with LIMIT/OFFSET queries around the displayed position:
+     * SQLite walks the index of the current order up to the offset, so the reload costs O(offset + page size) rather than a sort of the table.
      *
      * @param task The task to be created.
      */
     public void createTask(Task task) {
-        executor.execute(() -> taskDataSource.createTask(task));
+        pendingTasks.addCreation(task);
+        publishPendingChanges();
+        taskWriteQueue.createTask(task);
+    }
+
+    /**
+     * Creates a list of new tasks, within a single transaction.
+     *
+     * @param tasks The tasks to be created.
+     */
+    public void createTasks(List<Task> tasks) {
+        for (Task task : tasks) {
+            pendingTasks.addCreation(task);
+        }
+        publishPendingChanges();
+        taskWriteQueue.createTasks(tasks);
     }
 
     /**
      * Deletes the task with the specified ID.
+     * Its row is hidden right away, and shown again if the deletion fails.
+     * A task whose creation is still pending has a temporary negative ID: its creation is cancelled instead.
      *
      * @param taskId The ID of the task to be deleted.
      */
     public void deleteTask(long taskId) {
-        executor.execute(() -> taskDataSource.deleteTask(taskId));
+        if (taskId < 0) {
+            if (pendingTasks.deleteCreation(taskId)) {
+                publishPendingChanges();
+            }
+            return;
+        }
+        pendingTasks.addDeletions(Collections.singletonList(taskId));
+        publishPendingChanges();
+        if (getCurrentSelection().contains(taskId)) {
+            selection.setValue(getCurrentSelection().toggle(taskId)); // A deleted task is no longer part of the selection
+        }
+        taskWriteQueue.deleteTask(taskId);
+    }
+
+    /**
+     * Deletes the tasks with the specified IDs, within a single transaction.
+     *
+     * @param taskIds The IDs of the tasks to be deleted.
+     */
+    public void deleteTasks(Collection<Long> taskIds) {
+        pendingTasks.addDeletions(taskIds);
+        publishPendingChanges();
+        taskWriteQueue.deleteTasks(taskIds);
     }
 
     /**
@@ -107,7 +374,117 @@ public class TaskViewModel extends ViewModel {
      * @param task The task to be updated.
      */
     public void updateTask(Task task) {
-        executor.execute(() -> taskDataSource.updateTask(task));
+        taskWriteQueue.updateTask(task);
     }
 
+    /**
+     * Updates the specified tasks, within a single transaction.
+     *
+     * @param tasks The tasks to be updated.
+     */
+    public void updateTasks(List<Task> tasks) {
+        taskWriteQueue.updateTasks(tasks);
+    }
+
+    /**
+     * Retrieves LiveData containing the IDs of the tasks selected by the user.
+     *
+     * @return LiveData containing the selection, empty when the list is not in selection mode.
+     */
+    @NonNull
+    public LiveData<TaskSelection> getSelection() {
+        return this.selection;
+    }
+
+    /**
+     * Returns the current selection.
+     *
+     * @return The IDs of the tasks selected by the user.
+     */
+    @NonNull
+    private TaskSelection getCurrentSelection() {
+        TaskSelection currentSelection = selection.getValue();
+        return currentSelection != null ? currentSelection : TaskSelection.EMPTY;
+    }
+
+    /**
+     * Selects the task with the specified ID, or unselects it if it is selected.
+     * A task whose creation is pending cannot be selected, since it has no ID to be moved or deleted by yet.
+     *
+     * @param taskId The ID of the task.
+     */
+    public void toggleSelection(long taskId) {
+        if (taskId > 0) {
+            selection.setValue(getCurrentSelection().toggle(taskId));
+        }
+    }
+
+    /**
+     * Unselects all the tasks.
+     */
+    public void clearSelection() {
+        if (!getCurrentSelection().isEmpty()) {
+            selection.setValue(TaskSelection.EMPTY);
+        }
+    }
+
+    /**
+     * Deletes the selected tasks with a single statement, within a single transaction, then clears the selection.
+     * Their rows are hidden right away, and shown again if the deletion fails.
+     *
+     * @return The IDs of the deleted tasks, to restore them if the user undoes the deletion.
+     */
+    @NonNull
+    public List<Long> deleteSelectedTasks() {
+        List<Long> taskIds = getCurrentSelection().toList();
+        clearSelection();
+        if (!taskIds.isEmpty()) {
+            deleteTasks(taskIds);
+        }
+        return taskIds;
+    }
+
+    /**
+     * Restores deleted tasks, when the user undoes their deletion.
+     * Their rows are shown again right away: the deleted tasks are only marked as deleted until they are purged,
+     * so they are restored by clearing that mark, with their IDs, and without inserting them again.
+     *
+     * @param taskIds The IDs of the tasks to restore.
+     */
+    public void restoreTasks(@NonNull Collection<Long> taskIds) {
+        pendingTasks.removeDeletions(taskIds);
+        publishPendingChanges();
+        taskWriteQueue.restoreTasks(taskIds);
+    }
+
+    /**
+     * Moves the selected tasks to the specified project with a single statement, within a single transaction,
+     * then clears the selection. The rows are updated once the list is loaded again after the commit.
+     *
+     * @param projectId The ID of the project the tasks are moved to.
+     */
+    public void moveSelectedTasks(long projectId) {
+        List<Long> taskIds = getCurrentSelection().toList();
+        clearSelection();
+        if (!taskIds.isEmpty()) {
+            taskWriteQueue.moveTasks(taskIds, projectId);
+        }
+    }
+
+    /**
+     * Publishes the pending changes of the displayed list: the rows of the created tasks matching its criteria, in its order,
+     * and the IDs of the deleted tasks.
+     */
+    private void publishPendingChanges() {
+        PendingTaskChanges changes = pendingTasks.getChanges(getCriteria());
+        if (changes != PendingTaskChanges.NONE || pendingChanges.getValue() != PendingTaskChanges.NONE) {
+            pendingChanges.setValue(changes);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        taskWriteQueue.removeListener(writeListener);
+        mainHandler.removeCallbacksAndMessages(null);
+    }
 }
@@ -1,40 +1,94 @@
 package com.cleanup.todoc.ui;
 
 import android.content.res.ColorStateList;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.widget.AppCompatImageView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.cleanup.todoc.R;
-import com.cleanup.todoc.models.Project;
-import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskSelection;
+import com.cleanup.todoc.models.TaskWithProject;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
- * <p>Adapter which handles the list of tasks to display in the dedicated RecyclerView.</p>
+ * <p>Adapter which handles the paged list of tasks to display in the dedicated RecyclerView.</p>
+ * <p>The pending changes of the user are applied to the loaded rows of the paged list until it reflects them:
+ * the rows of the created tasks are placed among the loaded rows in the order of the list, and the rows of the deleted tasks are left out.
+ * The displayed rows are the result, so the positions and the count of the adapter are the ones of the visible rows.</p>
+ * <p>The texts of the rows are measured in the background as soon as the rows are loaded, before they are bound.</p>
+ * <p>A long click on a row selects it; while tasks are selected, a click on a row selects or unselects it.</p>
  *
  * @author Gaëtan HERFRAY
  */
 public class TasksAdapter extends RecyclerView.Adapter<TasksAdapter.TaskViewHolder> {
 
     /**
-     * The list of projects the adapter deals with
+     * Callback used to compare two lists of displayed rows,
+     * items are identified by the ID of the task and rebound only when their displayed content changed,
+     * including the name and color of their project.
+     * The payload of a change tells which views of the row have to be rebound.
      */
-    @NonNull
-    private List<Project> projects;
+    private static final DiffUtil.ItemCallback<TaskWithProject> DIFF_CALLBACK = new DiffUtil.ItemCallback<TaskWithProject>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull TaskWithProject oldTask, @NonNull TaskWithProject newTask) {
+            return oldTask.getId() == newTask.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull TaskWithProject oldTask, @NonNull TaskWithProject newTask) {
+            return oldTask.hasSameContent(newTask);
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull TaskWithProject oldTask, @NonNull TaskWithProject newTask) {
+            int changes = 0;
+            if (!oldTask.hasSameName(newTask)) {
+                changes |= PAYLOAD_NAME;
+            }
+            if (!oldTask.hasSameProject(newTask)) {
+                changes |= PAYLOAD_PROJECT;
+            }
+            return changes != 0 ? changes : null; // The row is fully rebound when no displayed field changed
+        }
+    };
 
     /**
-     * The list of tasks the adapter deals with
+     * Executor computing the differences between the displayed rows and the rows of a new list,
+     * the one shared by the differs of the RecyclerView library
      */
-    @NonNull
-    private List<Task> tasks;
+    private static final Executor DIFF_EXECUTOR = new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).build().getBackgroundThreadExecutor();
+
+    /**
+     * Payload of a change of the name of the task, which only rebinds the name of the row
+     */
+    private static final int PAYLOAD_NAME = 1;
+
+    /**
+     * Payload of a change of the project of the task, which only rebinds the project icon and name of the row
+     */
+    private static final int PAYLOAD_PROJECT = 1 << 1;
+
+    /**
+     * Payload of a change of the selection of the task, which only highlights the row or removes its highlight
+     */
+    private static final int PAYLOAD_SELECTED = 1 << 2;
 
     /**
      * The listener for when a task needs to be deleted
@@ -42,52 +96,305 @@ public class TasksAdapter extends RecyclerView.Adapter<TasksAdapter.TaskViewHold
     @NonNull
     private final DeleteTaskListener deleteTaskListener;
 
+    /**
+     * The listener for when the selection of a task needs to be toggled
+     */
+    @NonNull
+    private final SelectTaskListener selectTaskListener;
+
+    /**
+     * The last paged list submitted, whose rows are displayed once their differences with the displayed rows are computed
+     */
+    @Nullable
+    private PagedList<TaskWithProject> submittedTasks;
+
+    /**
+     * The changes of the user not reflected by the paged list yet
+     */
+    @NonNull
+    private PendingTaskChanges pendingChanges = PendingTaskChanges.NONE;
+
+    /**
+     * The rows displayed by the RecyclerView
+     */
+    @NonNull
+    private DisplayedTaskRows displayedRows = DisplayedTaskRows.EMPTY;
+
+    /**
+     * The paged list the displayed rows have been built from, whose pages are loaded when its rows are bound
+     */
+    @Nullable
+    private PagedList<TaskWithProject> displayedTasks;
+
+    /**
+     * The rows built from the last submitted list and the pending changes, which may not be displayed yet
+     */
+    @NonNull
+    private DisplayedTaskRows latestRows = DisplayedTaskRows.EMPTY;
+
+    /**
+     * Number of times rows have been built, so that the differences computed for rows replaced in the meantime are dropped
+     */
+    private int rowsGeneration;
+
+    /**
+     * Handler displaying the rows whose differences have been computed in the background
+     */
+    @NonNull
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The IDs of the selected tasks, whose rows are highlighted
+     */
+    @NonNull
+    private TaskSelection selection = TaskSelection.EMPTY;
+
+    /**
+     * The texts of the rows measured in the background
+     */
+    @NonNull
+    private final TaskTextCache textCache = new TaskTextCache();
+
+    /**
+     * Callback of the submitted paged list, measuring the texts of the rows of each page when it is loaded, then displaying them
+     */
+    @NonNull
+    private final PagedList.Callback pageCallback = new PagedList.Callback() {
+        @Override
+        public void onChanged(int position, int count) {
+            precomputeTexts(position, count);
+            updateRows(false);
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            precomputeTexts(position, count);
+            updateRows(false);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            updateRows(false);
+        }
+    };
+
     /**
      * Instantiates a new TasksAdapter.
      *
      * @param deleteTaskListener the listener for when a task needs to be deleted
+     * @param selectTaskListener the listener for when the selection of a task needs to be toggled
      */
-    TasksAdapter(@NonNull final DeleteTaskListener deleteTaskListener) {
+    TasksAdapter(@NonNull final DeleteTaskListener deleteTaskListener, @NonNull final SelectTaskListener selectTaskListener) {
         this.deleteTaskListener = deleteTaskListener;
-        this.projects = new ArrayList<>(); // Initializing an initial empty list of projects
-        this.tasks = new ArrayList<>(); // Initializing an initial empty list of tasks
+        this.selectTaskListener = selectTaskListener;
+        setHasStableIds(true); // Rows keep their views across the emissions of the paged list
+    }
+
+    /**
+     * Updates the paged list of tasks the adapter deals with.
+     * A change of project is received as a new list too, since the rows are joined with their project by the database.
+     * Each write to the Task table emits a new list, loaded again by Room with LIMIT/OFFSET queries around the displayed position,
+     * which walk the index of the current order up to the offset.
+     * Only its loaded rows are compared with the displayed ones, on a background thread, and the rows which differ are notified.
+     *
+     * @param tasks the paged list of tasks the adapter deals with to set
+     */
+    void updateTasks(@Nullable final PagedList<TaskWithProject> tasks) {
+        if (submittedTasks != null) {
+            submittedTasks.removeWeakCallback(pageCallback);
+        }
+        submittedTasks = tasks;
+        if (tasks != null) {
+            tasks.addWeakCallback(null, pageCallback); // The pages loaded from now on
+            textCache.precompute(tasks.snapshot()); // The pages already loaded
+        }
+        updateRows(false);
+    }
+
+    /**
+     * Updates the changes of the user displayed over the paged list.
+     * The differences are computed right away, so that the change is visible on the next frame.
+     *
+     * @param changes the pending changes to display
+     */
+    void updatePendingChanges(@NonNull final PendingTaskChanges changes) {
+        textCache.precompute(changes.getCreatedRows());
+        pendingChanges = changes;
+        updateRows(true);
+    }
+
+    /**
+     * Builds the rows to display from the loaded rows of the submitted list and the pending changes, and displays them.
+     * The differences with the displayed rows are computed on a background thread, unless they are needed on the next frame;
+     * rows built in the meantime replace the ones whose differences are still being computed.
+     *
+     * @param immediately true to compute the differences on the main thread
+     */
+    private void updateRows(boolean immediately) {
+        final PagedList<TaskWithProject> tasks = submittedTasks;
+        final DisplayedTaskRows oldRows = displayedRows;
+        final DisplayedTaskRows newRows = pendingChanges.applyTo(tasks != null ? tasks.snapshot() : Collections.<TaskWithProject>emptyList()); // Does not trigger the loading of more pages
+        final int generation = ++rowsGeneration;
+        latestRows = newRows;
+        if (immediately || oldRows.size() == 0 || newRows.size() == 0) {
+            displayRows(tasks, newRows, calculateDiff(oldRows, newRows));
+            return;
+        }
+        DIFF_EXECUTOR.execute(() -> {
+            final DiffUtil.DiffResult diff = calculateDiff(oldRows, newRows);
+            mainHandler.post(() -> {
+                if (generation == rowsGeneration) {
+                    displayRows(tasks, newRows, diff);
+                }
+            });
+        });
+    }
+
+    /**
+     * Displays the given rows, notifying the differences with the rows displayed before.
+     *
+     * @param tasks the paged list the rows have been built from
+     * @param rows  the rows to display
+     * @param diff  the differences between the displayed rows and the given ones
+     */
+    private void displayRows(@Nullable PagedList<TaskWithProject> tasks, @NonNull DisplayedTaskRows rows, @NonNull DiffUtil.DiffResult diff) {
+        displayedTasks = tasks;
+        displayedRows = rows;
+        diff.dispatchUpdatesTo(this);
+    }
+
+    /**
+     * Computes the differences between two lists of displayed rows.
+     *
+     * @param oldRows the displayed rows
+     * @param newRows the rows to display
+     * @return the differences between the rows
+     */
+    @NonNull
+    private static DiffUtil.DiffResult calculateDiff(@NonNull final DisplayedTaskRows oldRows, @NonNull final DisplayedTaskRows newRows) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldRows.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newRows.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return DIFF_CALLBACK.areItemsTheSame(oldRows.get(oldPosition), newRows.get(newPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return DIFF_CALLBACK.areContentsTheSame(oldRows.get(oldPosition), newRows.get(newPosition));
+            }
+
+            @Nullable
+            @Override
+            public Object getChangePayload(int oldPosition, int newPosition) {
+                return DIFF_CALLBACK.getChangePayload(oldRows.get(oldPosition), newRows.get(newPosition));
+            }
+        });
+    }
+
+    /**
+     * Updates the selected tasks. Only the displayed rows whose selection changed are rebound, with a payload highlighting them.
+     * The rows of the created tasks are never selected.
+     *
+     * @param newSelection the IDs of the selected tasks
+     */
+    void updateSelection(@NonNull final TaskSelection newSelection) {
+        final TaskSelection oldSelection = selection;
+        selection = newSelection;
+        for (int position = 0; position < displayedRows.size(); position++) {
+            long taskId = displayedRows.get(position).getId();
+            if (oldSelection.contains(taskId) != newSelection.contains(taskId)) {
+                notifyItemChanged(position, PAYLOAD_SELECTED);
+            }
+        }
     }
 
     /**
-     * Updates the list of tasks the adapter deals with.
+     * Returns the number of tasks displayed to the user once the rows of the last submitted list are displayed:
+     * its loaded tasks whose deletion is not pending, and the created tasks.
      *
-     * @param tasks the list of tasks the adapter deals with to set
+     * @return the number of displayed tasks
      */
-    void updateTasks(@NonNull final List<Task> tasks) {
-        this.tasks = tasks;  // Assign the new list of tasks to the adapter's list of tasks
-        notifyDataSetChanged(); // Notify the adapter that the data has changed, triggering a refresh of the RecyclerView
+    int getVisibleTaskCount() {
+        return latestRows.size();
+    }
+
+    /**
+     * Measures in the background the texts of the given range of rows of the submitted paged list.
+     *
+     * @param position the position of the first row in the paged list
+     * @param count    the number of rows
+     */
+    private void precomputeTexts(int position, int count) {
+        if (submittedTasks != null) {
+            textCache.precompute(submittedTasks.subList(position, Math.min(position + count, submittedTasks.size())));
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return displayedRows.size();
     }
 
     /**
-     * Updates the list of projects the adapter deals with.
+     * Returns the ID of the task displayed at the given position, the created tasks having temporary negative IDs.
      *
-     * @param projects the list of projects the adapter deals with to set
+     * @param position the position of the row
+     * @return the ID of the task
      */
-    void updateProjects(@NonNull final List<Project> projects) {
-        this.projects = projects;
-        notifyDataSetChanged();
+    @Override
+    public long getItemId(int position) {
+        return displayedRows.get(position).getId();
     }
 
     @NonNull
     @Override
     public TaskViewHolder onCreateViewHolder(@NonNull ViewGroup viewGroup, int viewType) {
         View view = LayoutInflater.from(viewGroup.getContext()).inflate(R.layout.item_task, viewGroup, false);
-        return new TaskViewHolder(view, deleteTaskListener);
+        return new TaskViewHolder(view, deleteTaskListener, selectTaskListener);
+    }
+
+    @Override
+    public void onViewAttachedToWindow(@NonNull TaskViewHolder taskViewHolder) {
+        // The texts are measured with the style of the first attached row, whose text direction is resolved, then the loaded rows are measured
+        if (!textCache.hasParams()) {
+            textCache.setParams(taskViewHolder.lblTaskName, taskViewHolder.lblProjectName);
+            textCache.precompute(pendingChanges.getCreatedRows());
+            if (submittedTasks != null) {
+                textCache.precompute(submittedTasks.snapshot());
+            }
+        }
     }
 
     @Override
     public void onBindViewHolder(@NonNull TaskViewHolder taskViewHolder, int position) {
-        taskViewHolder.bind(tasks.get(position));
+        int loadedPosition = displayedRows.getLoadedPosition(position);
+        if (loadedPosition >= 0 && displayedTasks != null) {
+            displayedTasks.loadAround(loadedPosition); // Loads the next page when getting close to the end of the loaded ones
+        }
+        taskViewHolder.bind(displayedRows.get(position));
     }
 
     @Override
-    public int getItemCount() {
-        return tasks.size();
+    public void onBindViewHolder(@NonNull TaskViewHolder taskViewHolder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(taskViewHolder, position);
+            return;
+        }
+        int changes = 0;
+        for (Object payload : payloads) { // The payloads of the changes dispatched since the last bind
+            changes |= (Integer) payload;
+        }
+        taskViewHolder.bind(displayedRows.get(position), changes);
     }
 
     /**
@@ -97,9 +404,21 @@ public class TasksAdapter extends RecyclerView.Adapter<TasksAdapter.TaskViewHold
         /**
          * Called when a task needs to be deleted.
          *
-         * @param task the task that needs to be deleted
+         * @param taskId the ID of the task that needs to be deleted
          */
-        void onDeleteTask(Task task);
+        void onDeleteTask(long taskId);
+    }
+
+    /**
+     * Listener for selecting tasks
+     */
+    public interface SelectTaskListener {
+        /**
+         * Called when a task needs to be selected, or unselected if it is selected.
+         *
+         * @param taskId the ID of the task whose selection needs to be toggled
+         */
+        void onToggleTaskSelection(long taskId);
     }
 
     /**
@@ -133,16 +452,36 @@ public class TasksAdapter extends RecyclerView.Adapter<TasksAdapter.TaskViewHold
          */
         private final DeleteTaskListener deleteTaskListener;
 
+        /**
+         * The listener for when the selection of a task needs to be toggled
+         */
+        private final SelectTaskListener selectTaskListener;
+
+        /**
+         * The parameters of the measured task names last found to match lblTaskName, null until checked
+         */
+        @Nullable
+        private PrecomputedTextCompat.Params taskNameParams;
+
+        /**
+         * The parameters of the measured project names last found to match lblProjectName, null until checked
+         */
+        @Nullable
+        private PrecomputedTextCompat.Params projectNameParams;
+
         /**
          * Instantiates a new TaskViewHolder.
          *
          * @param itemView the view of the task item
          * @param deleteTaskListener the listener for when a task needs to be deleted to set
+         * @param selectTaskListener the listener for when the selection of a task needs to be toggled to set
          */
-        TaskViewHolder(@NonNull View itemView, @NonNull DeleteTaskListener deleteTaskListener) {
+        TaskViewHolder(@NonNull View itemView, @NonNull DeleteTaskListener deleteTaskListener,
+                       @NonNull SelectTaskListener selectTaskListener) {
             super(itemView);
 
             this.deleteTaskListener = deleteTaskListener;
+            this.selectTaskListener = selectTaskListener;
 
             imgProject = itemView.findViewById(R.id.img_project);
             lblTaskName = itemView.findViewById(R.id.lbl_task_name);
@@ -153,44 +492,108 @@ public class TasksAdapter extends RecyclerView.Adapter<TasksAdapter.TaskViewHold
                 @Override
                 public void onClick(View view) {
                     final Object tag = view.getTag();
-                    if (tag instanceof Task) {
-                        TaskViewHolder.this.deleteTaskListener.onDeleteTask((Task) tag);
+                    if (tag instanceof Long) {
+                        TaskViewHolder.this.deleteTaskListener.onDeleteTask((Long) tag);
                     }
                 }
             });
+
+            // A long click starts the selection, then clicks add tasks to it or remove tasks from it
+            itemView.setOnLongClickListener(view -> {
+                toggleSelection();
+                return true;
+            });
+            itemView.setOnClickListener(view -> {
+                if (!selection.isEmpty()) {
+                    toggleSelection();
+                }
+            });
+        }
+
+        /**
+         * Toggles the selection of the task bound to the item view, whose ID is the tag of the delete image.
+         */
+        private void toggleSelection() {
+            final Object tag = imgDelete.getTag();
+            if (tag instanceof Long) {
+                selectTaskListener.onToggleTaskSelection((Long) tag);
+            }
         }
 
         /**
          * Binds a task to the item view.
+         * The item view is highlighted if the task is selected.
          *
          * @param task the task to bind in the item view
          */
-        void bind(Task task) {
-            lblTaskName.setText(task.getName()); // Sets the task name into the TextView lblTaskName
-            imgDelete.setTag(task); // Assigns the task as the tag of the delete image imgDelete
+        void bind(TaskWithProject task) {
+            imgDelete.setTag(task.getId()); // Assigns the ID of the task as the tag of the delete image imgDelete, it never changes for a row
+            bind(task, PAYLOAD_NAME | PAYLOAD_PROJECT | PAYLOAD_SELECTED);
+        }
 
-            Project taskProject = null; // Initializes taskProject to null to store the project associated with the task, if any
+        /**
+         * Rebinds the views of the item view affected by the given changes of its task.
+         *
+         * @param task    the task displayed in the item view
+         * @param changes the payloads of the changes, combined
+         */
+        void bind(TaskWithProject task, int changes) {
+            if ((changes & PAYLOAD_SELECTED) != 0) {
+                itemView.setActivated(selection.contains(task.getId())); // The background of the item view highlights it
+            }
+            if ((changes & PAYLOAD_NAME) != 0) {
+                // Sets the task name into the TextView lblTaskName, already measured unless it has not been measured in time
+                PrecomputedTextCompat taskName = textCache.getTaskName(task);
+                if (taskName != null && matchesTaskName(taskName.getParams())) {
+                    TextViewCompat.setPrecomputedText(lblTaskName, taskName);
+                } else {
+                    lblTaskName.setText(task.getName());
+                }
+            }
+            if ((changes & PAYLOAD_PROJECT) != 0) {
+                // The project has been joined by the query loading the row, nothing has to be looked up
+                imgProject.setSupportImageTintList(ColorStateList.valueOf(task.getProjectColor()));
+                PrecomputedTextCompat projectName = textCache.getProjectName(task);
+                if (projectName != null && matchesProjectName(projectName.getParams())) {
+                    TextViewCompat.setPrecomputedText(lblProjectName, projectName);
+                } else {
+                    lblProjectName.setText(task.getProjectName());
+                }
+            }
+        }
 
-            // Iterates through the list of projects to find the project corresponding to the task's project ID
-            for (Project project : projects) {
-                if (project.getId() == task.getProjectId()) {
-                    // If the project ID matches the task's project ID, stores the project in taskProject
-                    taskProject = project;
+        /**
+         * Returns whether texts measured with the given parameters can be set into lblTaskName.
+         * A measured text whose parameters differ from the ones of the TextView is rejected by it, for example when the row
+         * is bound before being attached and its text direction is not resolved yet: the text is then set as is.
+         *
+         * @param params the parameters of the measured text
+         * @return true if the parameters match the ones of lblTaskName
+         */
+        private boolean matchesTaskName(@NonNull PrecomputedTextCompat.Params params) {
+            if (params != taskNameParams) { // All the texts of the cache share the same parameters, they are compared once
+                if (!params.equals(TextViewCompat.getTextMetricsParams(lblTaskName))) {
+                    return false;
                 }
+                taskNameParams = params;
             }
+            return true;
+        }
 
-            // Checks if a project is found for the task
-            if (taskProject != null) {
-                // If a project is found, sets the color of the project image imgProject
-                // with the project's color and displays the project name in lblProjectName
-                imgProject.setSupportImageTintList(ColorStateList.valueOf(taskProject.getColor()));
-                lblProjectName.setText(taskProject.getName());
-            } else {
-                // If no project is found, hides the project image imgProject
-                // and clears the text of lblProjectName
-                imgProject.setVisibility(View.INVISIBLE);
-                lblProjectName.setText("");
+        /**
+         * Returns whether texts measured with the given parameters can be set into lblProjectName.
+         *
+         * @param params the parameters of the measured text
+         * @return true if the parameters match the ones of lblProjectName
+         */
+        private boolean matchesProjectName(@NonNull PrecomputedTextCompat.Params params) {
+            if (params != projectNameParams) {
+                if (!params.equals(TextViewCompat.getTextMetricsParams(lblProjectName))) {
+                    return false;
+                }
+                projectNameParams = params;
             }
+            return true;
         }
     }
 }
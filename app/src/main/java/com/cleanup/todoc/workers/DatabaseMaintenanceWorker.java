@@ -0,0 +1,92 @@
+package com.cleanup.todoc.workers;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.cleanup.todoc.R;
+import com.cleanup.todoc.database.TodocDatabase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background job keeping the database compact and its query plans up to date.
+ *
+ * It checkpoints the write-ahead log into the database file, so the log does not keep growing between app restarts,
+ * and lets SQLite refresh the statistics used by the query planner. It only runs when the device is idle.
+ */
+public class DatabaseMaintenanceWorker extends Worker {
+
+    /**
+     * Unique name of the periodic maintenance work.
+     */
+    private static final String WORK_NAME = "database-maintenance";
+
+    /**
+     * Constructor for the DatabaseMaintenanceWorker class, called by WorkManager.
+     *
+     * @param context      The application context.
+     * @param workerParams The parameters of the work.
+     */
+    public DatabaseMaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules the periodic maintenance of the database, keeping the existing schedule if any.
+     *
+     * @param context The application context.
+     */
+    public static void schedule(@NonNull Context context) {
+        Constraints.Builder constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            constraints.setRequiresDeviceIdle(true);
+        }
+
+        long intervalHours = context.getResources().getInteger(R.integer.database_maintenance_interval_hours);
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(DatabaseMaintenanceWorker.class, intervalHours, TimeUnit.HOURS)
+                .setConstraints(constraints.build())
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        SupportSQLiteDatabase db = TodocDatabase.getInstance(getApplicationContext()).getOpenHelper().getWritableDatabase();
+        try {
+            runPragma(db, "PRAGMA wal_checkpoint(TRUNCATE)"); // Moves the log content into the database file and truncates the log
+            runPragma(db, "PRAGMA optimize"); // Refreshes the statistics of the indexes when SQLite considers it useful
+            return Result.success();
+        } catch (SQLException e) {
+            return Result.retry();
+        }
+    }
+
+    /**
+     * Runs a PRAGMA statement which may return rows, and discards them.
+     *
+     * @param db     The database to run the statement on.
+     * @param pragma The PRAGMA statement.
+     */
+    private static void runPragma(@NonNull SupportSQLiteDatabase db, @NonNull String pragma) {
+        Cursor cursor = db.query(pragma);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+}
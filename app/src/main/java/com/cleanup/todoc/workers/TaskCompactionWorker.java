@@ -0,0 +1,131 @@
+package com.cleanup.todoc.workers;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.cleanup.todoc.R;
+import com.cleanup.todoc.database.TaskDao;
+import com.cleanup.todoc.database.TodocDatabase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background job purging the deleted tasks.
+ *
+ * Deleting a task only marks it as deleted, so the tombstones are purged here once their deletion can no longer be undone,
+ * in batches so that each transaction stays short, then the freed pages are given back to the file system
+ * by an incremental vacuum. It only runs when the device is idle, on the versions of Android which can wait for it.
+ */
+public class TaskCompactionWorker extends Worker {
+
+    /**
+     * Unique name of the periodic compaction work.
+     */
+    private static final String WORK_NAME = "task-compaction";
+
+    /**
+     * Value of PRAGMA auto_vacuum when the database can be vacuumed incrementally.
+     */
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * Constructor for the TaskCompactionWorker class, called by WorkManager.
+     *
+     * @param context      The application context.
+     * @param workerParams The parameters of the work.
+     */
+    public TaskCompactionWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * Schedules the periodic compaction of the tasks, keeping the existing schedule if any.
+     *
+     * @param context The application context.
+     */
+    public static void schedule(@NonNull Context context) {
+        Constraints.Builder constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true);
+        if (waitsForDeviceIdle()) {
+            constraints.setRequiresDeviceIdle(true);
+        }
+
+        long intervalHours = context.getResources().getInteger(R.integer.task_compaction_interval_hours);
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(TaskCompactionWorker.class, intervalHours, TimeUnit.HOURS)
+                .setConstraints(constraints.build())
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Resources resources = getApplicationContext().getResources();
+        long deletedBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(resources.getInteger(R.integer.task_tombstone_retention_hours));
+        int batchSize = resources.getInteger(R.integer.task_compaction_batch_size);
+
+        TodocDatabase database = TodocDatabase.getInstance(getApplicationContext());
+        TaskDao taskDao = database.taskDao();
+        try {
+            int purgedCount;
+            do {
+                purgedCount = taskDao.purgeDeletedTasks(deletedBefore, batchSize); // One short transaction per batch, the app can write in between
+            } while (purgedCount == batchSize && !isStopped());
+
+            SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+            if (waitsForDeviceIdle() && queryLong(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+                // Databases created before the tombstones: the mode only applies once the whole file is rebuilt, which is done once.
+                // A migration cannot do it, Room runs them in a transaction, so it is only done while the device is idle, when the app is not in use
+                db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                db.execSQL("VACUUM");
+            }
+            queryLong(db, "PRAGMA incremental_vacuum"); // Frees a page at each step, so every row is read
+            return Result.success();
+        } catch (SQLException e) {
+            return Result.retry();
+        }
+    }
+
+    /**
+     * Returns whether the work waits for the device to be idle, which JobScheduler only supports from Android 6.0.
+     * Before it, a database created before the tombstones is never rebuilt, so the incremental vacuum does nothing on it.
+     *
+     * @return True if the work only runs when the device is idle.
+     */
+    private static boolean waitsForDeviceIdle() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    /**
+     * Runs a statement which may return rows until it is complete, and returns the first column of its first row.
+     *
+     * @param db  The database to run the statement on.
+     * @param sql The statement.
+     * @return The first column of the first row, or 0 if the statement returns no row.
+     */
+    private static long queryLong(@NonNull SupportSQLiteDatabase db, @NonNull String sql) {
+        Cursor cursor = db.query(sql);
+        try {
+            long value = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+            while (cursor.moveToNext()) {
+                // Steps the statement to its end
+            }
+            return value;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.cleanup.todoc;
+
+import com.cleanup.todoc.database.QueryMetrics;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the query metrics registry
+ */
+public class QueryMetricsUnitTest {
+
+    @Test
+    public void test_percentiles() {
+        QueryMetrics queryMetrics = new QueryMetrics(Long.MAX_VALUE);
+        for (int micros = 1; micros <= 1000; micros++) {
+            queryMetrics.record("SELECT * FROM Task", TimeUnit.MICROSECONDS.toNanos(micros), 2);
+        }
+
+        List<QueryMetrics.StatementStats> stats = queryMetrics.getStatementStats();
+        assertEquals(1, stats.size());
+        QueryMetrics.StatementStats taskStats = stats.get(0);
+        assertEquals(1000, taskStats.getCallCount());
+        assertEquals(2000, taskStats.getRowCount());
+        assertEquals(1000, taskStats.getMaxMicros());
+
+        // The estimates are the upper bounds of buckets about 25% wide
+        long p50 = taskStats.getPercentileMicros(0.50);
+        long p95 = taskStats.getPercentileMicros(0.95);
+        long p99 = taskStats.getPercentileMicros(0.99);
+        assertTrue(p50 >= 500 && p50 <= 625);
+        assertTrue(p95 >= 950 && p95 <= 1000);
+        assertTrue(p99 >= 990 && p99 <= 1000);
+    }
+
+    @Test
+    public void test_statements_grouped_by_sql() {
+        QueryMetrics queryMetrics = new QueryMetrics(Long.MAX_VALUE);
+        queryMetrics.record("DELETE FROM Task WHERE id IN (?,?,?)", 1000, 3);
+        queryMetrics.record("DELETE FROM Task WHERE id IN (?, ?)", 1000, 2);
+        queryMetrics.record("SELECT * FROM Task WHERE id = ?", 1000, 1);
+
+        List<QueryMetrics.StatementStats> stats = queryMetrics.getStatementStats();
+        assertEquals(2, stats.size());
+        assertEquals("DELETE FROM Task WHERE id IN (?, ...)", stats.get(0).getSql());
+        assertEquals(2, stats.get(0).getCallCount());
+        assertEquals(5, stats.get(0).getRowCount());
+
+        queryMetrics.reset();
+        assertTrue(queryMetrics.getStatementStats().isEmpty());
+    }
+}
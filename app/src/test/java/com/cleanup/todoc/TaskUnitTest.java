@@ -1,16 +1,23 @@
 package com.cleanup.todoc;
 
+import com.cleanup.todoc.models.Project;
+import com.cleanup.todoc.models.ProjectRegistry;
 import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskSelection;
+import com.cleanup.todoc.models.TaskWithProject;
 
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for tasks
@@ -33,6 +40,24 @@ public class TaskUnitTest {
         assertNull(task4.getProject());
     }
 
+    @Test
+    public void test_taskProjectRegistryUpdate() {
+        final Task task1 = new Task(1, 1, "task 1", new Date().getTime());
+        final Task task4 = new Task(4, 4, "task 4", new Date().getTime());
+
+        try {
+            ProjectRegistry.getInstance().update(Arrays.asList(
+                    new Project(1L, "Projet Renommé", 0xFFEADAD1),
+                    new Project(4L, "Projet Nouveau", 0xFFB4CDBA)));
+
+            assertEquals("Projet Renommé", task1.getProject().getName());
+            assertEquals("Projet Nouveau", task4.getProject().getName());
+        } finally {
+            // Restore the hard-coded projects for the other tests
+            ProjectRegistry.getInstance().update(Arrays.asList(Project.getAllProjects()));
+        }
+    }
+
     @Test
     public void test_az_comparator() {
         final Task task1 = new Task(1, 1, "aaa", 123);
@@ -100,4 +125,60 @@ public class TaskUnitTest {
         assertSame(tasks.get(1), task2);
         assertSame(tasks.get(2), task3);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test_az_comparator_localized() {
+        final Task task1 = new Task(1, 1, "Zèbre", 123);
+        final Task task2 = new Task(2, 2, "écrire", 124);
+        final Task task3 = new Task(3, 3, "Bureau", 125);
+
+        final ArrayList<Task> tasks = new ArrayList<>();
+        tasks.add(task1);
+        tasks.add(task2);
+        tasks.add(task3);
+        Collections.sort(tasks, new Task.TaskAZComparator());
+
+        // Accents and case do not push a name after Z
+        assertSame(tasks.get(0), task3);
+        assertSame(tasks.get(1), task2);
+        assertSame(tasks.get(2), task1);
+    }
+
+    @Test
+    public void test_row_changes() {
+        final TaskWithProject row = new TaskWithProject(1, "task 1", 123, "Projet Tartampion", 0xFFEADAD1);
+        final TaskWithProject renamedRow = new TaskWithProject(1, "task 1 renamed", 123, "Projet Tartampion", 0xFFEADAD1);
+        final TaskWithProject movedRow = new TaskWithProject(1, "task 1", 123, "Projet Lucidia", 0xFFB4CDBA);
+
+        assertTrue(row.hasSameContent(new TaskWithProject(1, "task 1", 123, "Projet Tartampion", 0xFFEADAD1)));
+
+        // A rename only changes the name of the row, the project views are not rebound
+        assertFalse(row.hasSameContent(renamedRow));
+        assertFalse(row.hasSameName(renamedRow));
+        assertTrue(row.hasSameProject(renamedRow));
+
+        // A move to another project only changes the project of the row
+        assertFalse(row.hasSameContent(movedRow));
+        assertTrue(row.hasSameName(movedRow));
+        assertFalse(row.hasSameProject(movedRow));
+    }
+
+    @Test
+    public void test_selection_toggle() {
+        TaskSelection selection = TaskSelection.EMPTY.toggle(3).toggle(1).toggle(2);
+
+        assertEquals(3, selection.size());
+        assertTrue(selection.contains(1));
+        assertTrue(selection.contains(3));
+        assertFalse(selection.contains(4));
+        assertEquals(Arrays.asList(1L, 2L, 3L), selection.toList());
+
+        // Toggling a selected task unselects it, the other tasks stay selected
+        selection = selection.toggle(2);
+        assertFalse(selection.contains(2));
+        assertEquals(Arrays.asList(1L, 3L), selection.toList());
+
+        assertSame(TaskSelection.EMPTY, selection.toggle(1).toggle(3));
+        assertTrue(TaskSelection.EMPTY.isEmpty());
+    }
+}
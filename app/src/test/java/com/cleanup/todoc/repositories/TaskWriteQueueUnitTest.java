@@ -0,0 +1,241 @@
+package com.cleanup.todoc.repositories;
+
+import androidx.annotation.NonNull;
+
+import com.cleanup.todoc.models.Task;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the merge rules and the failure handling of the task write queue
+ */
+public class TaskWriteQueueUnitTest {
+
+    /**
+     * Window long enough for the writes to stay pending until the test applies them.
+     */
+    private static final long WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final FakeTaskDataRepository repository = new FakeTaskDataRepository();
+
+    private final RecordingListener listener = new RecordingListener();
+
+    @After
+    public void shutDownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void test_repeated_updates_keep_the_last_one() {
+        TaskWriteQueue queue = newQueue(100);
+        Task firstUpdate = new Task(1, 7, "first", 123);
+        Task lastUpdate = new Task(1, 7, "last", 123);
+        queue.updateTask(firstUpdate);
+        queue.updateTask(new Task(2, 8, "other", 124));
+        queue.updateTask(lastUpdate);
+        queue.flush();
+
+        assertEquals(1, repository.batchCount);
+        assertEquals(2, repository.updates.size());
+        assertSame(lastUpdate, repository.updates.get(0)); // Keeps the position of the first write of the task
+        assertEquals(8, repository.updates.get(1).getId());
+    }
+
+    @Test
+    public void test_delete_after_update_replaces_the_update() {
+        TaskWriteQueue queue = newQueue(100);
+        queue.updateTask(new Task(1, 7, "renamed", 123));
+        queue.deleteTask(7);
+        queue.flush();
+
+        assertTrue(repository.updates.isEmpty());
+        assertEquals(Collections.singletonList(7L), repository.deletions);
+    }
+
+    @Test
+    public void test_update_after_delete_is_dropped() {
+        TaskWriteQueue queue = newQueue(100);
+        queue.deleteTask(7);
+        queue.updateTasks(Arrays.asList(new Task(1, 7, "renamed", 123), new Task(1, 8, "kept", 124)));
+        queue.flush();
+
+        assertEquals(1, repository.updates.size());
+        assertEquals(8, repository.updates.get(0).getId());
+        assertEquals(Collections.singletonList(7L), repository.deletions);
+    }
+
+    @Test
+    public void test_restore_cancels_pending_deletion() throws Exception {
+        TaskWriteQueue queue = newQueue(100);
+        queue.deleteTasks(Arrays.asList(7L, 8L));
+        queue.restoreTasks(Collections.singletonList(7L));
+        queue.flush();
+        awaitExecutor();
+
+        assertEquals(Collections.singletonList(8L), repository.deletions);
+        assertTrue(repository.restorations.isEmpty()); // Never written, so nothing to restore
+    }
+
+    @Test
+    public void test_full_queue_is_applied_without_waiting() throws Exception {
+        TaskWriteQueue queue = newQueue(3);
+        queue.createTask(new Task(1, "first", 123));
+        queue.createTask(new Task(1, "second", 124));
+        awaitExecutor();
+
+        assertEquals(0, repository.batchCount); // Still within the window
+
+        queue.deleteTask(7);
+        awaitExecutor();
+
+        assertEquals(1, repository.batchCount);
+        assertEquals(2, repository.creations.size());
+        assertEquals(Collections.singletonList(7L), repository.deletions);
+        assertEquals(2, listener.createdTasks.size());
+        assertEquals(Collections.singletonList(7L), listener.deletedTaskIds);
+    }
+
+    @Test
+    public void test_failing_write_does_not_roll_back_the_others() {
+        TaskWriteQueue queue = newQueue(100);
+        Task goodTask = new Task(1, "good", 123);
+        Task badTask = new Task(99, "bad", 124); // Project which does not exist
+        queue.createTasks(Arrays.asList(goodTask, badTask));
+        queue.updateTask(new Task(1, 8, "renamed", 125));
+        queue.deleteTask(7);
+        queue.flush();
+
+        // The grouped transaction failed, each write has then been applied on its own
+        assertEquals(0, repository.batchCount);
+        assertEquals(Collections.singletonList(goodTask), repository.creations);
+        assertEquals(1, repository.updates.size());
+        assertEquals(Collections.singletonList(7L), repository.deletions);
+
+        // Only the failing creation is reported as failed
+        assertEquals(Collections.singletonList(goodTask), listener.createdTasks);
+        assertEquals(Collections.singletonList(7L), listener.deletedTaskIds);
+        assertEquals(Collections.singletonList(badTask), listener.failedCreations);
+        assertTrue(listener.failedDeletions.isEmpty());
+    }
+
+    @NonNull
+    private TaskWriteQueue newQueue(int maxPendingWrites) {
+        TaskWriteQueue queue = new TaskWriteQueue(repository, executor, WINDOW_MILLIS, maxPendingWrites);
+        queue.addListener(listener);
+        return queue;
+    }
+
+    /**
+     * Waits until the tasks submitted to the single thread of the executor so far have run.
+     */
+    private void awaitExecutor() throws Exception {
+        executor.submit(() -> { }).get(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Repository recording the writes applied to it, in which the tasks of the project 99 cannot be written.
+     */
+    private static class FakeTaskDataRepository extends TaskDataRepository {
+
+        private static final long MISSING_PROJECT_ID = 99;
+
+        int batchCount;
+
+        final List<Task> creations = new ArrayList<>();
+
+        final List<Task> updates = new ArrayList<>();
+
+        final List<Long> deletions = new ArrayList<>();
+
+        final List<Long> restorations = new ArrayList<>();
+
+        private long nextId = 100;
+
+        FakeTaskDataRepository() {
+            super(null, null);
+        }
+
+        @Override
+        public void applyWrites(List<Task> createdTasks, List<Task> updatedTasks, Collection<Long> deletedTaskIds) {
+            for (Task task : createdTasks) {
+                checkProject(task);
+            }
+            batchCount++;
+            for (Task task : createdTasks) {
+                createTask(task);
+            }
+            updates.addAll(updatedTasks);
+            deletions.addAll(deletedTaskIds);
+        }
+
+        @Override
+        public void createTask(Task task) {
+            checkProject(task);
+            task.setId(nextId++);
+            creations.add(task);
+        }
+
+        @Override
+        public void updateTask(Task task) {
+            updates.add(task);
+        }
+
+        @Override
+        public void deleteTask(long taskId) {
+            deletions.add(taskId);
+        }
+
+        @Override
+        public void restoreTasks(Collection<Long> taskIds) {
+            restorations.addAll(taskIds);
+        }
+
+        private static void checkProject(@NonNull Task task) {
+            if (task.getProjectId() == MISSING_PROJECT_ID) {
+                throw new IllegalStateException("FOREIGN KEY constraint failed");
+            }
+        }
+    }
+
+    /**
+     * Listener recording the outcome of the writes.
+     */
+    private static class RecordingListener implements TaskWriteQueue.WriteListener {
+
+        final List<Task> createdTasks = new ArrayList<>();
+
+        final List<Long> deletedTaskIds = new ArrayList<>();
+
+        final List<Task> failedCreations = new ArrayList<>();
+
+        final List<Long> failedDeletions = new ArrayList<>();
+
+        @Override
+        public void onWritesApplied(@NonNull List<Task> createdTasks, @NonNull List<Long> deletedTaskIds) {
+            this.createdTasks.addAll(createdTasks);
+            this.deletedTaskIds.addAll(deletedTaskIds);
+        }
+
+        @Override
+        public void onWritesFailed(@NonNull List<Task> createdTasks, @NonNull List<Long> deletedTaskIds, @NonNull RuntimeException error) {
+            failedCreations.addAll(createdTasks);
+            failedDeletions.addAll(deletedTaskIds);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.cleanup.todoc.ui;
+
+import androidx.annotation.NonNull;
+
+import com.cleanup.todoc.models.TaskWithProject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for the merge of the changes not reflected by the paged list yet with its loaded rows
+ */
+public class PendingTaskChangesUnitTest {
+
+    private static final Comparator<TaskWithProject> OLD_FIRST = (left, right) -> Long.compare(left.getCreationTimestamp(), right.getCreationTimestamp());
+
+    private final List<TaskWithProject> loadedRows = Arrays.asList(row(1, 100), row(2, 200), row(3, 300), row(4, 400));
+
+    @Test
+    public void test_insertion_position_in_empty_list() {
+        assertEquals(0, PendingTaskChanges.getInsertionPosition(Collections.emptyList(), row(-1, 100), OLD_FIRST));
+    }
+
+    @Test
+    public void test_insertion_position_before_after_and_between_loaded_rows() {
+        assertEquals(0, PendingTaskChanges.getInsertionPosition(loadedRows, row(-1, 50), OLD_FIRST));
+        assertEquals(2, PendingTaskChanges.getInsertionPosition(loadedRows, row(-1, 250), OLD_FIRST));
+        assertEquals(4, PendingTaskChanges.getInsertionPosition(loadedRows, row(-1, 500), OLD_FIRST));
+    }
+
+    @Test
+    public void test_insertion_position_after_tied_loaded_rows() {
+        List<TaskWithProject> tiedRows = Arrays.asList(row(1, 100), row(2, 200), row(3, 200), row(4, 300));
+
+        assertEquals(3, PendingTaskChanges.getInsertionPosition(tiedRows, row(-1, 200), OLD_FIRST));
+        assertEquals(1, PendingTaskChanges.getInsertionPosition(tiedRows, row(-1, 100), OLD_FIRST));
+    }
+
+    @Test
+    public void test_no_change_displays_the_loaded_rows() {
+        DisplayedTaskRows rows = PendingTaskChanges.NONE.applyTo(loadedRows);
+
+        assertEquals(loadedRows, rows.getRows());
+        assertEquals(Arrays.asList(0, 1, 2, 3), getLoadedPositions(rows));
+    }
+
+    @Test
+    public void test_created_rows_are_placed_in_the_order_of_the_list() {
+        PendingTaskChanges changes = changes(Arrays.asList(row(-1, 50), row(-2, 250), row(-3, 260), row(-4, 500)));
+
+        DisplayedTaskRows rows = changes.applyTo(loadedRows);
+
+        assertEquals(Arrays.asList(-1L, 1L, 2L, -2L, -3L, 3L, 4L, -4L), getIds(rows));
+        assertEquals(Arrays.asList(-1, 0, 1, -1, -1, 2, 3, -1), getLoadedPositions(rows));
+    }
+
+    @Test
+    public void test_deleted_rows_are_left_out() {
+        PendingTaskChanges changes = new PendingTaskChanges(Collections.emptyList(), new HashSet<>(Arrays.asList(1L, 3L, 9L)), OLD_FIRST);
+
+        DisplayedTaskRows rows = changes.applyTo(loadedRows);
+
+        assertEquals(Arrays.asList(2L, 4L), getIds(rows));
+        assertEquals(Arrays.asList(1, 3), getLoadedPositions(rows));
+    }
+
+    @Test
+    public void test_created_row_is_kept_before_a_deleted_row() {
+        PendingTaskChanges changes = new PendingTaskChanges(Collections.singletonList(row(-1, 250)),
+                Collections.singleton(3L), OLD_FIRST);
+
+        DisplayedTaskRows rows = changes.applyTo(loadedRows);
+
+        assertEquals(Arrays.asList(1L, 2L, -1L, 4L), getIds(rows));
+        assertEquals(Arrays.asList(0, 1, -1, 3), getLoadedPositions(rows));
+    }
+
+    @Test
+    public void test_created_rows_without_loaded_rows() {
+        PendingTaskChanges changes = changes(Arrays.asList(row(-1, 50), row(-2, 250)));
+
+        DisplayedTaskRows rows = changes.applyTo(Collections.emptyList());
+
+        assertEquals(Arrays.asList(-1L, -2L), getIds(rows));
+        assertEquals(Arrays.asList(-1, -1), getLoadedPositions(rows));
+        assertSame(changes.getCreatedRows().get(0), rows.get(0));
+    }
+
+    @NonNull
+    private static PendingTaskChanges changes(@NonNull List<TaskWithProject> createdRows) {
+        return new PendingTaskChanges(createdRows, Collections.emptySet(), OLD_FIRST);
+    }
+
+    @NonNull
+    private static TaskWithProject row(long id, long creationTimestamp) {
+        return new TaskWithProject(id, "Tâche " + id, creationTimestamp, "Projet", 0);
+    }
+
+    @NonNull
+    private static List<Long> getIds(@NonNull DisplayedTaskRows rows) {
+        List<Long> ids = new ArrayList<>();
+        for (TaskWithProject row : rows.getRows()) {
+            ids.add(row.getId());
+        }
+        return ids;
+    }
+
+    @NonNull
+    private static List<Integer> getLoadedPositions(@NonNull DisplayedTaskRows rows) {
+        List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < rows.size(); position++) {
+            positions.add(rows.getLoadedPosition(position));
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,208 @@
+package com.cleanup.todoc.ui;
+
+import androidx.annotation.NonNull;
+
+import com.cleanup.todoc.models.SortMethod;
+import com.cleanup.todoc.models.Task;
+import com.cleanup.todoc.models.TaskWithProject;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the tracking of the changes not reflected by the displayed list yet
+ */
+public class PendingTaskTrackerUnitTest {
+
+    private static final TaskListCriteria ALL_TASKS = new TaskListCriteria(SortMethod.NONE, TaskViewModel.ALL_PROJECTS, "");
+
+    private final RecordingWrites writes = new RecordingWrites();
+
+    private final PendingTaskTracker tracker = new PendingTaskTracker(writes);
+
+    @Test
+    public void test_created_rows_follow_the_order_of_the_list() {
+        tracker.addCreation(new Task(1, "aaa Tâche example", 100));
+        tracker.addCreation(new Task(1, "zzz Tâche example", 101));
+        tracker.addCreation(new Task(1, "hhh Tâche example", 102));
+
+        assertEquals(Arrays.asList("aaa", "zzz", "hhh"), getCreatedNames(ALL_TASKS));
+        assertEquals(Arrays.asList("aaa", "zzz", "hhh"), getCreatedNames(ALL_TASKS.withSortMethod(SortMethod.OLD_FIRST)));
+        assertEquals(Arrays.asList("hhh", "zzz", "aaa"), getCreatedNames(ALL_TASKS.withSortMethod(SortMethod.RECENT_FIRST)));
+        assertEquals(Arrays.asList("aaa", "hhh", "zzz"), getCreatedNames(ALL_TASKS.withSortMethod(SortMethod.ALPHABETICAL)));
+        assertEquals(Arrays.asList("zzz", "hhh", "aaa"), getCreatedNames(ALL_TASKS.withSortMethod(SortMethod.ALPHABETICAL_INVERTED)));
+    }
+
+    @Test
+    public void test_created_rows_come_after_the_stored_rows_they_tie_with() {
+        TaskWithProject storedRow = new TaskWithProject(7, "hhh Tâche example", 102, "", 0);
+        tracker.addCreation(new Task(1, "hhh Tâche example", 102));
+        TaskWithProject createdRow = tracker.getChanges(ALL_TASKS).getCreatedRows().get(0);
+
+        for (SortMethod sortMethod : SortMethod.values()) {
+            assertTrue(ALL_TASKS.withSortMethod(sortMethod).getRowOrder().compare(storedRow, createdRow) < 0);
+        }
+    }
+
+    @Test
+    public void test_created_rows_match_the_search_by_word_prefix() {
+        tracker.addCreation(new Task(1, "Réunion d'équipe", 100));
+        tracker.addCreation(new Task(2, "Préparer la réunion", 101));
+        tracker.addCreation(new Task(1, "Ranger le bureau", 102));
+
+        assertEquals(Arrays.asList("Réunion", "Préparer"), getCreatedNames(ALL_TASKS.withSearchText("reu")));
+        assertEquals(Collections.singletonList("Réunion"), getCreatedNames(ALL_TASKS.withSearchText("EQUIPE reun")));
+        assertEquals(Collections.emptyList(), getCreatedNames(ALL_TASKS.withSearchText("union"))); // Not a prefix of a word
+        assertEquals(Collections.singletonList("Préparer"), getCreatedNames(ALL_TASKS.withSearchText("reu").withProjectId(2)));
+    }
+
+    @Test
+    public void test_committed_changes_are_dropped_when_the_list_is_loaded() {
+        Task task = new Task(1, "task", 100);
+        tracker.addCreation(task);
+        tracker.addDeletions(Collections.singletonList(8L));
+        task.setId(9);
+
+        assertFalse(tracker.onWritesCommitted(Collections.singletonList(task), Collections.singletonList(8L)));
+        assertEquals(1, tracker.getChanges(ALL_TASKS).getCreatedRows().size()); // Until the list reflects them
+        assertTrue(tracker.getChanges(ALL_TASKS).isDeleted(8));
+
+        assertTrue(tracker.onTasksLoaded(Collections.emptyList()));
+        assertSame(PendingTaskChanges.NONE, tracker.getChanges(ALL_TASKS));
+    }
+
+    @Test
+    public void test_loaded_row_replaces_the_created_row_before_the_commit_is_reported() {
+        Task task = new Task(1, "task", 100);
+        tracker.addCreation(task);
+        task.setId(9);
+
+        assertFalse(tracker.onTasksLoaded(Collections.singletonList(new TaskWithProject(8, "other", 99, "", 0))));
+        assertTrue(tracker.onTasksLoaded(Collections.singletonList(new TaskWithProject(9, "task", 100, "", 0))));
+        assertSame(PendingTaskChanges.NONE, tracker.getChanges(ALL_TASKS));
+    }
+
+    @Test
+    public void test_failed_writes_are_rolled_back_without_the_committed_ones() {
+        Task goodTask = new Task(1, "good", 100);
+        Task badTask = new Task(99, "bad", 101);
+        tracker.addCreation(goodTask);
+        tracker.addCreation(badTask);
+        tracker.addDeletions(Arrays.asList(7L, 8L));
+        goodTask.setId(9);
+
+        // The write queue reports the writes applied one by one, then the failed ones
+        tracker.onWritesCommitted(Collections.singletonList(goodTask), Collections.singletonList(7L));
+        assertTrue(tracker.onWritesRolledBack(Collections.singletonList(badTask), Collections.singletonList(8L)));
+
+        PendingTaskChanges changes = tracker.getChanges(ALL_TASKS);
+        assertEquals(Collections.singletonList("good"), getNames(changes.getCreatedRows()));
+        assertEquals(Collections.singleton(7L), changes.getDeletedTaskIds());
+
+        tracker.onTasksLoaded(Collections.singletonList(new TaskWithProject(9, "good", 100, "", 0)));
+        assertSame(PendingTaskChanges.NONE, tracker.getChanges(ALL_TASKS));
+    }
+
+    @Test
+    public void test_restored_tasks_are_shown_again() {
+        tracker.addDeletions(Arrays.asList(7L, 8L));
+        tracker.onWritesCommitted(Collections.emptyList(), Arrays.asList(7L, 8L));
+        tracker.removeDeletions(Collections.singletonList(7L));
+        tracker.onTasksLoaded(Collections.emptyList());
+
+        assertSame(PendingTaskChanges.NONE, tracker.getChanges(ALL_TASKS));
+    }
+
+    @Test
+    public void test_deleting_a_queued_creation_cancels_it() {
+        Task task = new Task(1, "task", 100);
+        tracker.addCreation(task);
+        writes.cancelled = true;
+
+        assertFalse(tracker.deleteCreation(-2)); // No such row
+        assertTrue(tracker.deleteCreation(-1));
+        assertEquals(Collections.singletonList(task), writes.cancelledCreations);
+        assertTrue(writes.deletedTaskIds.isEmpty());
+        assertSame(PendingTaskChanges.NONE, tracker.getChanges(ALL_TASKS));
+    }
+
+    @Test
+    public void test_deleting_a_creation_being_applied_deletes_it_once_committed() {
+        Task task = new Task(1, "task", 100);
+        tracker.addCreation(task);
+        writes.cancelled = false;
+
+        assertTrue(tracker.deleteCreation(-1));
+        assertTrue(writes.deletedTaskIds.isEmpty());
+
+        task.setId(9);
+        assertTrue(tracker.onWritesCommitted(Collections.singletonList(task), Collections.emptyList()));
+        assertEquals(Collections.singletonList(9L), writes.deletedTaskIds);
+        assertTrue(tracker.getChanges(ALL_TASKS).isDeleted(9)); // Hidden if the list loads it before its deletion
+    }
+
+    @Test
+    public void test_deleting_a_committed_creation_deletes_it() {
+        Task task = new Task(1, "task", 100);
+        tracker.addCreation(task);
+        task.setId(9);
+        tracker.onWritesCommitted(Collections.singletonList(task), Collections.emptyList());
+
+        assertTrue(tracker.deleteCreation(-1));
+        assertTrue(writes.cancelledCreations.isEmpty());
+        assertEquals(Collections.singletonList(9L), writes.deletedTaskIds);
+        assertTrue(tracker.getChanges(ALL_TASKS).getCreatedRows().isEmpty());
+        assertTrue(tracker.getChanges(ALL_TASKS).isDeleted(9));
+    }
+
+    @NonNull
+    private List<String> getCreatedNames(@NonNull TaskListCriteria criteria) {
+        return getNames(tracker.getChanges(criteria).getCreatedRows());
+    }
+
+    /**
+     * Returns the first word of the name of each row.
+     */
+    @NonNull
+    private static List<String> getNames(@NonNull List<TaskWithProject> rows) {
+        List<String> names = new ArrayList<>();
+        for (TaskWithProject row : rows) {
+            names.add(row.getName().split(" ")[0]);
+        }
+        return names;
+    }
+
+    /**
+     * Writes recording the deletions and the cancellations asked by the tracker.
+     */
+    private static class RecordingWrites implements PendingTaskTracker.TaskWrites {
+
+        final List<Long> deletedTaskIds = new ArrayList<>();
+
+        final List<Task> cancelledCreations = new ArrayList<>();
+
+        boolean cancelled;
+
+        @Override
+        public void deleteTask(long taskId) {
+            deletedTaskIds.add(taskId);
+        }
+
+        @Override
+        public boolean cancelCreation(@NonNull Task task) {
+            if (cancelled) {
+                cancelledCreations.add(task);
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM replacement of the Android ContentValues class, for the benchmarks only.
+ */
+public class ContentValues {
+
+    /**
+     * The values, indexed by column name.
+     */
+    private final Map<String, Object> values = new HashMap<>();
+
+    public void put(String key, String value) {
+        values.put(key, value);
+    }
+
+    public void put(String key, Integer value) {
+        values.put(key, value);
+    }
+
+    public void put(String key, Long value) {
+        values.put(key, value);
+    }
+}
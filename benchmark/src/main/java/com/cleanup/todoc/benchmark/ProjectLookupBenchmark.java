@@ -0,0 +1,108 @@
+package com.cleanup.todoc.benchmark;
+
+import com.cleanup.todoc.models.Project;
+import com.cleanup.todoc.models.ProjectRegistry;
+import com.cleanup.todoc.models.Task;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the lookup of the project of each task of a list, as done when binding the rows of the list of tasks.
+ * Each benchmark looks up the project of every task of the list once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectLookupBenchmark {
+
+    /**
+     * Number of tasks whose project is looked up.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * Number of projects the tasks are spread over.
+     */
+    @Param({"3", "50"})
+    public int projectCount;
+
+    /**
+     * The tasks whose project is looked up.
+     */
+    private List<Task> tasks;
+
+    /**
+     * The list of projects, as emitted by the database.
+     */
+    private List<Project> projects;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42); // Same list for every run, so the results can be compared
+        projects = new ArrayList<>(projectCount);
+        for (int i = 1; i <= projectCount; i++) {
+            projects.add(new Project(i, "Projet " + i, 0xFF000000 | random.nextInt(0xFFFFFF)));
+        }
+        tasks = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            tasks.add(new Task(1 + random.nextInt(projectCount), i, "Tâche " + i, i));
+        }
+        ProjectRegistry.getInstance().update(projects);
+    }
+
+    @Benchmark
+    public void lookupWithLinearScan(Blackhole blackhole) {
+        // Baseline: the scan of the list of projects for each row, which was done by the adapter before the registry
+        for (Task task : tasks) {
+            Project taskProject = null;
+            for (Project project : projects) {
+                if (project.getId() == task.getProjectId()) {
+                    taskProject = project;
+                    break;
+                }
+            }
+            blackhole.consume(taskProject);
+        }
+    }
+
+    @Benchmark
+    public void lookupWithGetProjectById(Blackhole blackhole) {
+        for (Task task : tasks) {
+            blackhole.consume(Project.getProjectById(task.getProjectId()));
+        }
+    }
+
+    @Benchmark
+    public void lookupWithTaskGetProject(Blackhole blackhole) {
+        for (Task task : tasks) {
+            blackhole.consume(task.getProject());
+        }
+    }
+
+    @Benchmark
+    public void updateRegistry() {
+        // Cost paid each time the list of projects emitted by the database changes
+        ProjectRegistry.getInstance().update(projects);
+    }
+}
@@ -0,0 +1,85 @@
+package com.cleanup.todoc.benchmark;
+
+import com.cleanup.todoc.models.Task;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the sorting of lists of tasks in memory, by the comparators of the Task class.
+ * Each benchmark sorts a copy of the same shuffled list, so the cost of the copy is included in all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskSortBenchmark {
+
+    /**
+     * Words the names of the tasks are made of, with accents and upper case letters like real French task names.
+     */
+    private static final String[] WORDS = {
+            "ranger", "Écrire", "bureau", "été", "Appeler", "réunion", "corbeille", "Élève", "vitres", "Zéro", "ébauche", "agenda"
+    };
+
+    /**
+     * Number of tasks in the sorted list.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * The shuffled list of tasks, copied by each benchmark.
+     */
+    private List<Task> tasks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42); // Same list for every run, so the results can be compared
+        tasks = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(size);
+            tasks.add(new Task(1 + random.nextInt(3), i, name, random.nextInt(Integer.MAX_VALUE)));
+        }
+    }
+
+    @Benchmark
+    public List<Task> sortByNameWithStringCompareTo() {
+        // Baseline: the comparison of the raw names, which was used by the comparators before the collator
+        List<Task> sortedTasks = new ArrayList<>(tasks);
+        Collections.sort(sortedTasks, (left, right) -> left.getName().compareTo(right.getName()));
+        return sortedTasks;
+    }
+
+    @Benchmark
+    public List<Task> sortByNameWithComparator() {
+        List<Task> sortedTasks = new ArrayList<>(tasks);
+        Collections.sort(sortedTasks, new Task.TaskAZComparator());
+        return sortedTasks;
+    }
+
+    @Benchmark
+    public List<Task> sortByRecentWithComparator() {
+        List<Task> sortedTasks = new ArrayList<>(tasks);
+        Collections.sort(sortedTasks, new Task.TaskRecentComparator());
+        return sortedTasks;
+    }
+}